@@ -0,0 +1,246 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * AllocationBudget checks that the game engine does not allocate more than
+ * its budget. For each level, it measures the bytes allocated by the thread of
+ * the game during a number of turns, with and without the draw of the cells
+ * changed by the turn, and the heap kept by a LevelManager for each tile of
+ * the level. A measure above its budget is reported and the exit status is 1.
+ * <p>
+ * The budgets are read from a properties file, bench/budgets.properties by
+ * default. The key of a budget is the name of the measure, move, frame or tile,
+ * and it can be followed by the name of a level to give it its own budget, as
+ * in move.level4.txt. The budgets of move and frame are in bytes by turn, the
+ * budget of tile is in bytes by tile. The arguments are :
+ * <ul>
+ * <li>-levels directory : the directory of the level files</li>
+ * <li>-sizes 128,512 : the sizes of the generated square boards</li>
+ * <li>-entities 0.3 : the part of the cells with an element</li>
+ * <li>-texts 0.02 : the part of the cells with a text</li>
+ * <li>-warmup 1000 : the warmup time of a measure, in milliseconds</li>
+ * <li>-turns 5000 : the number of turns measured</li>
+ * <li>-budgets bench/budgets.properties : the file of the budgets</li>
+ * </ul>
+ */
+public class AllocationBudget {
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+	private static final int HEAPTILES = 200_000; // Number of tiles kept to measure the heap
+
+	private String levels = "src/levels";
+	private int[] sizes = { 128, 512 };
+	private double entitydensity = 0.3;
+	private double textdensity = 0.02;
+	private long warmup = 1000;
+	private int turns = 5000;
+	private String budgetfile = "bench/budgets.properties";
+	private final Properties budgets = new Properties();
+	private int failures;
+
+	// The turns measured on a level, with or without their draw
+	@FunctionalInterface
+	private interface Player {
+		TurnOutcome play(Direction direction);
+	}
+
+	// Read the arguments
+	private AllocationBudget(String[] args) {
+		for (var i = 0; i + 1 < args.length; i += 2) {
+			var value = args[i + 1];
+			switch (args[i]) {
+			case "-levels":
+				levels = value;
+				break;
+			case "-sizes":
+				sizes = List.of(value.split(",")).stream().mapToInt(Integer::parseInt).toArray();
+				break;
+			case "-entities":
+				entitydensity = Double.parseDouble(value);
+				break;
+			case "-texts":
+				textdensity = Double.parseDouble(value);
+				break;
+			case "-warmup":
+				warmup = Long.parseLong(value);
+				break;
+			case "-turns":
+				turns = Integer.parseInt(value);
+				break;
+			case "-budgets":
+				budgetfile = value;
+				break;
+			default:
+				throw new IllegalArgumentException(args[i] + " is not a correct argument");
+			}
+		}
+	}
+
+	// Read the budgets
+	private void readBudgets() throws IOException {
+		try (InputStream input = Files.newInputStream(Path.of(budgetfile))) {
+			budgets.load(input);
+		}
+	}
+
+	// The budget of a measure on a level, -1 if it has no budget
+	private long budgetOf(String measure, String level) {
+		var budget = budgets.getProperty(measure + "." + level, budgets.getProperty(measure));
+		return budget == null ? -1 : Long.parseLong(budget.trim());
+	}
+
+	// Print a measure and compare it to its budget
+	private void report(String level, String measure, double value, String unit) {
+		var budget = budgetOf(measure, level);
+		var over = budget >= 0 && value > budget;
+		if (over) {
+			failures++;
+		}
+		System.out.printf(Locale.ROOT, "%-28s %-6s %12.1f %-7s budget %8s %s%n", level, measure, value, unit,
+				budget < 0 ? "none" : String.valueOf(budget), over ? "OVER" : "ok");
+	}
+
+	// Play turns during warmup milliseconds, then play the turns measured and
+	// returns the bytes allocated by turn. Only the turns are measured, a level
+	// played again when it is over is loaded and started outside of the measure
+	private double measure(String filename, Function<LevelManager, Player> start) throws IOException {
+		var random = new Random(0);
+		var directions = Direction.values();
+		var player = start.apply(load(filename));
+		var end = System.nanoTime() + warmup * 1_000_000;
+		while (System.nanoTime() < end) {
+			if (player.play(directions[random.nextInt(directions.length)]) != TurnOutcome.CONTINUE) {
+				player = start.apply(load(filename));
+			}
+		}
+		var thread = Thread.currentThread().getId();
+		var bytes = 0L;
+		for (var n = 0; n < turns; n++) {
+			var direction = directions[random.nextInt(directions.length)];
+			var before = THREADS.getThreadAllocatedBytes(thread);
+			var outcome = player.play(direction);
+			bytes += THREADS.getThreadAllocatedBytes(thread) - before;
+			if (outcome != TurnOutcome.CONTINUE) {
+				player = start.apply(load(filename));
+			}
+		}
+		return (double) bytes / turns;
+	}
+
+	private static LevelManager load(String filename) throws IOException {
+		var level = LevelParser.initialise(filename);
+		level.updateAnddetectRule();
+		return level;
+	}
+
+	// The number of tiles of a level
+	private static long tilesOf(LevelManager level) {
+		var tiles = 0L;
+		for (var entity : level.getData()) {
+			tiles += entity.getCoords().size();
+		}
+		return tiles;
+	}
+
+	// The heap used after a full collection
+	private static long usedHeap() {
+		var memory = ManagementFactory.getMemoryMXBean();
+		for (var x = 0; x < 3; x++) {
+			memory.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	// Returns the heap kept by a level for each tile, measured on enough copies
+	// of the level to count about HEAPTILES tiles
+	private static double heapByTile(String filename) throws IOException {
+		var tiles = Math.max(1, tilesOf(load(filename)));
+		var copies = (int) Math.max(1, HEAPTILES / tiles);
+		var kept = new LevelManager[copies];
+		var before = usedHeap();
+		for (var x = 0; x < copies; x++) {
+			kept[x] = load(filename);
+		}
+		var after = usedHeap();
+		Reference.reachabilityFence(kept); // The copies are kept until the heap is measured
+		return (double) (after - before) / (copies * tiles);
+	}
+
+	// Check the budgets of a level file
+	private void check(String name, String filename) throws IOException {
+		report(name, "move", measure(filename, level -> level::step), "B/turn");
+
+		var design = new LevelDesign();
+		var image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+		var graphics = image.createGraphics();
+		try {
+			report(name, "frame", measure(filename, level -> { // The whole board is drawn before the turns
+				var view = BabaGameView.initGameGraphics(0, 0, image.getWidth(), image.getHeight(), level);
+				view.draw(graphics, level, design);
+				return direction -> {
+					var outcome = level.step(direction);
+					view.draw(graphics, level, design);
+					return outcome;
+				};
+			}), "B/turn");
+		} finally {
+			graphics.dispose();
+		}
+
+		report(name, "tile", heapByTile(filename), "B/tile");
+	}
+
+	private void run() throws IOException {
+		readBudgets();
+		var files = new ArrayList<String>();
+		var directory = new File(levels);
+		if (directory.isDirectory()) {
+			for (var file : directory.list()) {
+				files.add(file);
+			}
+			files.sort(null);
+		}
+		for (var file : files) {
+			check(file, levels + "/" + file);
+		}
+		for (var size : sizes) {
+			var path = Files.createTempFile("synthetic", ".txt");
+			try {
+				new SyntheticLevel(size, size, entitydensity, textdensity).write(path, size);
+				check("synthetic-" + size + "x" + size, path.toString());
+			} finally {
+				Files.delete(path);
+			}
+		}
+		if (failures != 0) {
+			System.out.println(failures + " measures over their budget");
+		}
+	}
+
+	/**
+	 * Run the check of the budgets, the exit status is 1 if a measure is over its
+	 * budget.
+	 *
+	 * @param args the arguments passed with the command
+	 * @throws IOException if a level or the budgets can not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		var budget = new AllocationBudget(args);
+		budget.run();
+		if (budget.failures != 0) {
+			System.exit(1);
+		}
+	}
+}
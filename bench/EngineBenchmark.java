@@ -0,0 +1,212 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * EngineBenchmark measures the hot paths of the game : parsing a level,
+ * loading it compiled in the binary format, resuming it from a snapshot,
+ * detecting the rules, playing a turn, drawing the whole board and drawing the
+ * cells changed by a turn. For each operation, it reports the number of
+ * operations per second and the number of bytes allocated by operation.
+ * <p>
+ * The levels measured are the files of a directory (src/levels by default) and
+ * generated levels of several sizes. A size of 1000 with -entities 0.98 gives a
+ * file of 1M tiles. The arguments are :
+ * <ul>
+ * <li>-levels directory : the directory of the level files</li>
+ * <li>-sizes 32,128,512 : the sizes of the generated square boards</li>
+ * <li>-entities 0.3 : the part of the cells with an element</li>
+ * <li>-texts 0.02 : the part of the cells with a text</li>
+ * <li>-warmup 1000 : the warmup time of an operation, in milliseconds</li>
+ * <li>-time 2000 : the measure time of an operation, in milliseconds</li>
+ * <li>-ops parse,load,resume,rules,move,draw,frame : the operations to
+ * measure</li>
+ * </ul>
+ */
+public class EngineBenchmark {
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	private String levels = "src/levels";
+	private int[] sizes = { 32, 128, 512 };
+	private double entitydensity = 0.3;
+	private double textdensity = 0.02;
+	private long warmup = 1000;
+	private long time = 2000;
+	private List<String> ops = List.of("parse", "load", "resume", "rules", "move", "draw", "frame");
+
+	// An operation to measure, it can throw an IOException
+	@FunctionalInterface
+	private interface Operation {
+		void run() throws IOException;
+	}
+
+	// Read the arguments
+	private EngineBenchmark(String[] args) {
+		for (var i = 0; i + 1 < args.length; i += 2) {
+			var value = args[i + 1];
+			switch (args[i]) {
+			case "-levels":
+				levels = value;
+				break;
+			case "-sizes":
+				sizes = List.of(value.split(",")).stream().mapToInt(Integer::parseInt).toArray();
+				break;
+			case "-entities":
+				entitydensity = Double.parseDouble(value);
+				break;
+			case "-texts":
+				textdensity = Double.parseDouble(value);
+				break;
+			case "-warmup":
+				warmup = Long.parseLong(value);
+				break;
+			case "-time":
+				time = Long.parseLong(value);
+				break;
+			case "-ops":
+				ops = List.of(value.split(","));
+				break;
+			default:
+				throw new IllegalArgumentException(args[i] + " is not a correct argument");
+			}
+		}
+	}
+
+	// Run op during warmup milliseconds, then during time milliseconds and print
+	// the number of operations by second and the bytes allocated by operation
+	// Returns the number of operations by second, 0 if the operation is not measured
+	private double measure(String level, String name, Operation op) throws IOException {
+		if (!ops.contains(name)) {
+			return 0;
+		}
+		var end = System.nanoTime() + warmup * 1_000_000;
+		while (System.nanoTime() < end) {
+			op.run();
+		}
+		var thread = Thread.currentThread().getId();
+		var count = 0L;
+		var bytes = THREADS.getThreadAllocatedBytes(thread);
+		var start = System.nanoTime();
+		end = start + time * 1_000_000;
+		long now;
+		do {
+			op.run();
+			count++;
+		} while ((now = System.nanoTime()) < end);
+		bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+		var rate = count * 1e9 / (now - start);
+		System.out.printf(Locale.ROOT, "%-28s %-6s %14.1f ops/s %14.1f B/op%n", level, name, rate,
+				(double) bytes / count);
+		return rate;
+	}
+
+	// Measure all the operations on a level file
+	private void benchmark(String name, String filename) throws IOException {
+		var rate = measure(name, "parse", () -> LevelParser.initialise(filename));
+		if (rate != 0) { // The throughput of the parser
+			System.out.printf(Locale.ROOT, "%-28s %-6s %14.1f MB/s%n", name, "parse",
+					rate * Files.size(Path.of(filename)) / 1e6);
+		}
+
+		if (ops.contains("load")) {
+			var compiled = Files.createTempFile("compiled", LevelCompiler.EXTENSION);
+			try {
+				LevelCompiler.compile(filename, compiled);
+				measure(name, "load", () -> LevelCompiler.load(compiled.toString()));
+			} finally {
+				Files.delete(compiled);
+			}
+		}
+
+		if (ops.contains("resume")) { // The snapshot of the level with its rules detected
+			var snapshot = Files.createTempFile("snapshot", LevelSnapshot.EXTENSION);
+			try {
+				var first = LevelParser.initialise(filename);
+				first.updateAnddetectRule();
+				new LevelSnapshot(filename, first).save(snapshot);
+				measure(name, "resume", () -> LevelSnapshot.load(snapshot));
+			} finally {
+				Files.delete(snapshot);
+			}
+		}
+
+		var level = LevelParser.initialise(filename);
+		level.updateAnddetectRule();
+		var rulemanager = new RuleManager();
+		var texts = level.getAllText();
+		var elements = level.getAllElement();
+		measure(name, "rules", () -> rulemanager.updateAnddetectRule(texts, elements));
+
+		var random = new Random(0);
+		var directions = Direction.values();
+		var playing = new LevelManager[] { level };
+		measure(name, "move", () -> {
+			if (playing[0].step(directions[random.nextInt(directions.length)]) != TurnOutcome.CONTINUE) {
+				playing[0] = LevelParser.initialise(filename); // Play again when the level is over
+				playing[0].updateAnddetectRule();
+			}
+		});
+
+		if (ops.contains("draw") || ops.contains("frame")) {
+			var design = new LevelDesign();
+			var drawn = LevelParser.initialise(filename);
+			drawn.updateAnddetectRule();
+			var first = drawn.getState();
+			var image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+			var graphics = image.createGraphics();
+			var view = BabaGameView.initGameGraphics(0, 0, image.getWidth(), image.getHeight(), drawn);
+			measure(name, "draw", () -> {
+				view.repaintAll();
+				view.draw(graphics, drawn, design);
+			});
+			measure(name, "frame", () -> { // A turn then the draw of the cells which have changed
+				if (drawn.step(directions[random.nextInt(directions.length)]) != TurnOutcome.CONTINUE) {
+					drawn.setState(first);
+				}
+				view.draw(graphics, drawn, design);
+			});
+			graphics.dispose();
+		}
+	}
+
+	private void run() throws IOException {
+		var files = new ArrayList<String>();
+		var directory = new File(levels);
+		if (directory.isDirectory()) {
+			for (var file : directory.list()) {
+				files.add(file);
+			}
+			files.sort(null);
+		}
+		for (var file : files) {
+			benchmark(file, levels + "/" + file);
+		}
+		for (var size : sizes) {
+			var path = Files.createTempFile("synthetic", ".txt");
+			try {
+				new SyntheticLevel(size, size, entitydensity, textdensity).write(path, size);
+				benchmark("synthetic-" + size + "x" + size, path.toString());
+			} finally {
+				Files.delete(path);
+			}
+		}
+	}
+
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param args the arguments passed with the command
+	 * @throws IOException if a level can not be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		new EngineBenchmark(args).run();
+	}
+}
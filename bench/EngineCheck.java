@@ -0,0 +1,341 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * EngineCheck checks that the game engine plays the levels as expected. Each
+ * level is played with random moves from several seeds, and the result of each
+ * turn is compared :
+ * <ul>
+ * <li>baseline : to the outcomes recorded with the first version of the
+ * engine</li>
+ * <li>undo : when moves are undone and redone, to a new level where only the
+ * moves kept are played</li>
+ * <li>compiled : to the level compiled in the binary format and loaded</li>
+ * <li>resume : when the level is saved in a snapshot after some turns, to the
+ * snapshot loaded, which plays the next turns</li>
+ * </ul>
+ * A check which fails is reported and the exit status is 1.
+ * <p>
+ * The outcomes are read from a properties file, bench/outcomes.properties by
+ * default. The key of an outcome is the name of the level and the seed of the
+ * moves, as in level1.txt.3, its value is the digest of the turns. The levels
+ * checked are the files of a directory and generated levels where elements
+ * which are YOU and SINK stack on the same cells. In the stacked levels, some
+ * elements are written a second time at the end of the file, on cells already
+ * taken, so the entities of a cell are not read in the order of the level.
+ * They have no baseline outcomes : the first version of the engine moved the
+ * elements of a cell one by one, in the order they came, so it did not play
+ * them in a way which can be compared. The arguments are :
+ * <ul>
+ * <li>-levels src/levels : the directory of the level files</li>
+ * <li>-outcomes bench/outcomes.properties : the file of the outcomes</li>
+ * </ul>
+ */
+public class EngineCheck {
+	private static final int TURNS = 200; // Number of turns played from a seed
+	private static final int SEEDS = 5; // Number of seeds played on a level file
+	private static final int UNDOSEEDS = 20; // Number of seeds played with undos on a level
+	private static final int SYNTHETIC = 100; // Number of generated levels
+	private static final int RESUMETURNS = 20; // Maximum number of turns played before a snapshot
+	private static final Word[][] SINKRULES = { { NounTextEnum.BABA, OperatorEnum.IS, PropertyEnum.YOU },
+			{ NounTextEnum.FLOWER, OperatorEnum.IS, PropertyEnum.YOU },
+			{ NounTextEnum.FLOWER, OperatorEnum.IS, PropertyEnum.SINK },
+			{ NounTextEnum.ROCK, OperatorEnum.IS, PropertyEnum.PUSH },
+			{ NounTextEnum.ROCK, OperatorEnum.IS, PropertyEnum.SINK },
+			{ NounTextEnum.WALL, OperatorEnum.IS, PropertyEnum.STOP } };
+	private static final NounImgEnum[] STACKED = { NounImgEnum.BABA, NounImgEnum.FLOWER, NounImgEnum.ROCK };
+
+	private String levels = "src/levels";
+	private String outcomefile = "bench/outcomes.properties";
+	private final Properties outcomes = new Properties();
+	private int failures;
+
+	// Read the arguments
+	private EngineCheck(String[] args) {
+		for (var i = 0; i + 1 < args.length; i += 2) {
+			var value = args[i + 1];
+			switch (args[i]) {
+			case "-levels":
+				levels = value;
+				break;
+			case "-outcomes":
+				outcomefile = value;
+				break;
+			default:
+				throw new IllegalArgumentException(args[i] + " is not a correct argument");
+			}
+		}
+	}
+
+	// Read the outcomes
+	private void readOutcomes() throws IOException {
+		try (InputStream input = Files.newInputStream(Path.of(outcomefile))) {
+			outcomes.load(input);
+		}
+	}
+
+	// Print the result of a check
+	private void report(String level, String check, int seeds, int failed) {
+		if (failed != 0) {
+			failures++;
+		}
+		System.out.printf(Locale.ROOT, "%-28s %-8s %3d seeds %s%n", level, check, seeds,
+				failed == 0 ? "ok" : failed + " FAILED");
+	}
+
+	// Write a generated level, with the elements of STACKED written again at the
+	// end of the file if stacked is true
+	private static void writeSynthetic(Path path, int n, boolean stacked) throws IOException {
+		var lines = 8 + n % 9;
+		var cols = 8 + n % 7;
+		new SyntheticLevel(lines, cols, 0.5, 0, SINKRULES).write(path, n);
+		if (!stacked) {
+			return;
+		}
+		var random = new Random(n);
+		var text = new StringBuilder();
+		for (var element : STACKED) {
+			text.append("ni ").append(element).append(System.lineSeparator());
+			for (var x = 0; x < lines + cols; x++) {
+				text.append(random.nextInt(cols + 1)).append(' ').append(random.nextInt(lines + 1))
+						.append(System.lineSeparator());
+			}
+		}
+		Files.writeString(path, text, StandardOpenOption.APPEND);
+	}
+
+	private static LevelManager load(String filename) throws IOException {
+		var level = LevelParser.initialise(filename);
+		level.updateAnddetectRule();
+		return level;
+	}
+
+	// The state of a level as a string which does not depend on the order of the
+	// entities and of their coordinates : for each entity, its properties and its
+	// sorted coordinates
+	private static String stateOf(LevelManager level) {
+		var entities = new ArrayList<String>();
+		for (var entity : level.getData()) {
+			var coords = new ArrayList<String>();
+			for (var coord : entity.getCoords()) {
+				coords.add(coord.i() + ":" + coord.j());
+			}
+			Collections.sort(coords);
+			var rules = new ArrayList<String>();
+			for (var rule : entity.getRuleOfElem()) {
+				rules.add(rule.name());
+			}
+			Collections.sort(rules);
+			entities.add(entity.getClass().getSimpleName() + entity + rules + coords);
+		}
+		Collections.sort(entities);
+		return String.join("|", entities);
+	}
+
+	// Play the turns of a seed and returns their digest, made of the win and of
+	// the state after each turn
+	private static String digestOf(LevelManager level, int seed) {
+		var random = new Random(seed);
+		var directions = Direction.values();
+		var digest = 0L;
+		for (var turn = 0; turn < TURNS; turn++) {
+			var win = level.move(directions[random.nextInt(directions.length)]);
+			digest = digest * 31 + (win ? 1 : 0);
+			digest = digest * 31 + stateOf(level).hashCode();
+		}
+		return Long.toHexString(digest);
+	}
+
+	// Returns true if two levels are in the same state
+	private static boolean sameState(LevelManager level, LevelManager other) {
+		return level.stateHash() == other.stateHash() && Arrays.equals(level.getState(), other.getState());
+	}
+
+	// Returns a new level where the moves are played
+	private static LevelManager replay(String filename, List<Direction> moves) throws IOException {
+		var level = load(filename);
+		for (var direction : moves) {
+			level.step(direction);
+		}
+		return level;
+	}
+
+	// Play moves, undos and redos from a seed and returns true if the level is,
+	// after each of them, in the state of a level where only the moves kept are
+	// played
+	private static boolean undoMatches(String filename, int seed) throws IOException {
+		var random = new Random(seed);
+		var directions = Direction.values();
+		var level = load(filename);
+		var replayed = load(filename);
+		var moves = new ArrayList<Direction>();
+		var undone = new ArrayList<Direction>();
+		for (var turn = 0; turn < TURNS; turn++) {
+			var action = random.nextInt(10);
+			if (action < 2) {
+				if (level.undo()) {
+					undone.add(moves.remove(moves.size() - 1));
+					replayed = replay(filename, moves);
+				}
+			} else if (action == 2) {
+				if (level.redo()) {
+					var direction = undone.remove(undone.size() - 1);
+					moves.add(direction);
+					replayed.step(direction);
+				}
+			} else {
+				var direction = directions[random.nextInt(directions.length)];
+				moves.add(direction);
+				undone.clear();
+				if (level.step(direction) != replayed.step(direction)) {
+					return false;
+				}
+			}
+			if (!sameState(level, replayed)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Play the same moves from a seed on two levels and returns true if they are
+	// in the same state after each turn
+	private static boolean playSame(LevelManager level, LevelManager other, int seed) {
+		var random = new Random(seed);
+		var directions = Direction.values();
+		for (var turn = 0; turn < TURNS; turn++) {
+			var direction = directions[random.nextInt(directions.length)];
+			if (level.step(direction) != other.step(direction) || !sameState(level, other)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Returns true if the level compiled in the binary format plays as its file
+	private static boolean compiledMatches(String filename, int seed) throws IOException {
+		var compiled = Files.createTempFile("compiled", LevelCompiler.EXTENSION);
+		try {
+			LevelCompiler.compile(filename, compiled);
+			var loaded = LevelCompiler.load(compiled.toString());
+			loaded.updateAnddetectRule();
+			var level = load(filename);
+			return sameState(level, loaded) && playSame(level, loaded, seed);
+		} finally {
+			Files.delete(compiled);
+		}
+	}
+
+	// Play some turns from a seed, save the level in a snapshot and returns true
+	// if the snapshot loaded plays the next turns as the level
+	private static boolean resumeMatches(String filename, int seed) throws IOException {
+		var random = new Random(seed);
+		var directions = Direction.values();
+		var level = load(filename);
+		var turns = 1 + random.nextInt(RESUMETURNS);
+		for (var turn = 0; turn < turns; turn++) {
+			level.step(directions[random.nextInt(directions.length)]);
+		}
+		var snapshot = Files.createTempFile("snapshot", LevelSnapshot.EXTENSION);
+		try {
+			new LevelSnapshot(filename, level).save(snapshot);
+			var loaded = LevelSnapshot.load(snapshot).level();
+			return sameState(level, loaded) && playSame(level, loaded, seed);
+		} finally {
+			Files.delete(snapshot);
+		}
+	}
+
+	// Check a level file, seeds is the number of seeds compared to the recorded
+	// outcomes, 0 if the level has no outcomes
+	private void check(String name, String filename, int seeds) throws IOException {
+		var failed = 0;
+		if (seeds != 0) {
+			for (var seed = 0; seed < seeds; seed++) {
+				var expected = outcomes.getProperty(name + "." + seed);
+				if (expected == null || !expected.trim().equals(digestOf(load(filename), seed))) {
+					failed++;
+				}
+			}
+			report(name, "baseline", seeds, failed);
+		}
+
+		failed = 0;
+		for (var seed = 0; seed < UNDOSEEDS; seed++) {
+			if (!undoMatches(filename, seed)) {
+				failed++;
+			}
+		}
+		report(name, "undo", UNDOSEEDS, failed);
+
+		failed = 0;
+		for (var seed = 0; seed < UNDOSEEDS; seed++) {
+			if (!compiledMatches(filename, seed)) {
+				failed++;
+			}
+		}
+		report(name, "compiled", UNDOSEEDS, failed);
+
+		failed = 0;
+		for (var seed = 0; seed < UNDOSEEDS; seed++) {
+			if (!resumeMatches(filename, seed)) {
+				failed++;
+			}
+		}
+		report(name, "resume", UNDOSEEDS, failed);
+	}
+
+	private void run() throws IOException {
+		readOutcomes();
+		var files = new ArrayList<String>();
+		var directory = new File(levels);
+		if (directory.isDirectory()) {
+			for (var file : directory.list()) {
+				files.add(file);
+			}
+			files.sort(null);
+		}
+		for (var file : files) {
+			check(file, levels + "/" + file, SEEDS);
+		}
+		for (var stacked : new boolean[] { false, true }) {
+			for (var n = 0; n < SYNTHETIC; n++) {
+				var path = Files.createTempFile("synthetic", ".txt");
+				try {
+					writeSynthetic(path, n, stacked);
+					check((stacked ? "stacked-" : "sink-") + n, path.toString(), stacked ? 0 : 1);
+				} finally {
+					Files.delete(path);
+				}
+			}
+		}
+		if (failures != 0) {
+			System.out.println(failures + " levels failed");
+		}
+	}
+
+	/**
+	 * Run the checks, the exit status is 1 if a check fails.
+	 *
+	 * @param args the arguments passed with the command
+	 * @throws IOException if a level or the outcomes can not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		var check = new EngineCheck(args);
+		check.run();
+		if (check.failures != 0) {
+			System.exit(1);
+		}
+	}
+}
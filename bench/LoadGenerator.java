@@ -0,0 +1,189 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadGenerator simulates many clients of a {@link GameServer}. Each client
+ * connects, loads a level, plays a number of random steps, asks the state of
+ * the level and quits. The clients are played by a number of threads at the
+ * same time, each thread plays its clients one after the other. At the end,
+ * it reports the number of sessions by second, the percentiles of the time of
+ * a step seen by the clients and the number of errors, and the exit status is
+ * 1 if there was an error.
+ * <p>
+ * Without -port, a server is started in the same JVM on a free port. The
+ * arguments are :
+ * <ul>
+ * <li>-port 0 : the port of a server already started</li>
+ * <li>-levels src/levels : the directory of the levels of the server started</li>
+ * <li>-level level1.txt : the level loaded by the clients</li>
+ * <li>-clients 10000 : the number of clients</li>
+ * <li>-concurrency 256 : the number of clients connected at the same time</li>
+ * <li>-steps 20 : the number of steps played by each client</li>
+ * </ul>
+ */
+public class LoadGenerator {
+	private int port;
+	private String levels = "src/levels";
+	private String level = "level1.txt";
+	private int clients = 10000;
+	private int concurrency = 256;
+	private int steps = 20;
+	private final AtomicInteger next = new AtomicInteger(); // The next client to play
+	private final AtomicLong errors = new AtomicLong();
+	private final LatencyHistogram latencies = new LatencyHistogram(); // Guarded by itself
+
+	// Read the arguments
+	private LoadGenerator(String[] args) {
+		for (var i = 0; i + 1 < args.length; i += 2) {
+			var value = args[i + 1];
+			switch (args[i]) {
+			case "-port":
+				port = Integer.parseInt(value);
+				break;
+			case "-levels":
+				levels = value;
+				break;
+			case "-level":
+				level = value;
+				break;
+			case "-clients":
+				clients = Integer.parseInt(value);
+				break;
+			case "-concurrency":
+				concurrency = Integer.parseInt(value);
+				break;
+			case "-steps":
+				steps = Integer.parseInt(value);
+				break;
+			default:
+				throw new IllegalArgumentException(args[i] + " is not a correct argument");
+			}
+		}
+	}
+
+	// Send a command and returns the answer, an answer which does not start with
+	// the expected word is an error
+	private String send(BufferedReader reader, BufferedWriter writer, String command, String expected)
+			throws IOException {
+		writer.write(command);
+		writer.write('\n');
+		writer.flush();
+		var answer = reader.readLine();
+		if (answer == null || !answer.startsWith(expected)) {
+			throw new IOException(command + ": " + answer);
+		}
+		return answer;
+	}
+
+	// Play one client
+	private void play(int client, LatencyHistogram clientlatencies) throws IOException {
+		var random = new Random(client);
+		var directions = Direction.values();
+		try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				var writer = new BufferedWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+			send(reader, writer, "LOAD " + level, "OK");
+			for (var n = 0; n < steps; n++) {
+				var start = System.nanoTime();
+				send(reader, writer, "STEP " + directions[random.nextInt(directions.length)], "OK");
+				clientlatencies.record(System.nanoTime() - start);
+			}
+			send(reader, writer, "STATE", "OK");
+			send(reader, writer, "QUIT", "BYE");
+		}
+	}
+
+	// Play the clients until there is none left
+	private void work() {
+		var clientlatencies = new LatencyHistogram();
+		int client;
+		while ((client = next.getAndIncrement()) < clients) {
+			try {
+				play(client, clientlatencies);
+			} catch (IOException e) {
+				if (errors.getAndIncrement() == 0) { // Only the first error is printed
+					System.err.println("client " + client + ": " + e.getMessage());
+				}
+			}
+		}
+		synchronized (latencies) {
+			latencies.add(clientlatencies);
+		}
+	}
+
+	private void run() throws IOException, InterruptedException {
+		GameServer server = null;
+		Thread serving = null;
+		if (port == 0) {
+			server = new GameServer(0, Path.of(levels));
+			port = server.getPort();
+			var started = server;
+			serving = new Thread(() -> {
+				try {
+					started.serve();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, "server");
+			serving.start();
+		}
+		try {
+			var start = System.nanoTime();
+			var workers = new ArrayList<Thread>();
+			for (var x = 0; x < concurrency; x++) {
+				var worker = new Thread(this::work, "client-" + x);
+				worker.start();
+				workers.add(worker);
+			}
+			for (var worker : workers) {
+				worker.join();
+			}
+			var seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf(Locale.ROOT, "%d clients, %d at the same time, %d steps each, %d errors in %.2f s%n",
+					clients, concurrency, steps, errors.get(), seconds);
+			System.out.printf(Locale.ROOT, "%.1f sessions/s, %.1f steps/s%n", clients / seconds,
+					latencies.getCount() / seconds);
+			System.out.printf(Locale.ROOT, "step round trip p50 %.1f us p90 %.1f us p99 %.1f us p99.9 %.1f us max %.1f us%n",
+					latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(90) / 1000.0,
+					latencies.getValueAtPercentile(99) / 1000.0, latencies.getValueAtPercentile(99.9) / 1000.0,
+					latencies.getMax() / 1000.0);
+			if (server != null) {
+				System.out.println("server : " + server.report());
+			}
+		} finally {
+			if (server != null) {
+				server.close();
+				serving.join();
+			}
+		}
+	}
+
+	/**
+	 * Run the clients, the exit status is 1 if a client had an error.
+	 *
+	 * @param args the arguments passed with the command
+	 * @throws IOException          if the server can not be started
+	 * @throws InterruptedException if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		var generator = new LoadGenerator(args);
+		generator.run();
+		if (generator.errors.get() != 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SyntheticLevel writes generated levels in the format read by LevelParser.
+ * This class is characterized by the following information :
+ * <ul>
+ * <li>The number of lines and columns of the board</li>
+ * <li>The part of the cells with an element</li>
+ * <li>The part of the cells with a text, besides the rules</li>
+ * <li>The rules written on the first lines</li>
+ * </ul>
+ * The level always starts with its rules on its first lines, <b>BABA IS
+ * YOU</b>, <b>ROCK IS PUSH</b>, <b>WALL IS STOP</b> and <b>FLAG IS WIN</b> by
+ * default, and a BABA in its center.
+ */
+public class SyntheticLevel {
+	private static final NounImgEnum[] ELEMENTS = { NounImgEnum.ROCK, NounImgEnum.WALL, NounImgEnum.GRASS,
+			NounImgEnum.FLOWER, NounImgEnum.TILE, NounImgEnum.FLAG };
+
+	private final int lines;
+	private final int cols;
+	private final double entitydensity;
+	private final double textdensity;
+	private final Word[][] rules;
+
+	/**
+	 * Create a new SyntheticLevel with the default rules.
+	 * 
+	 * @param lines         the number of lines of the board
+	 * @param cols          the number of columns of the board
+	 * @param entitydensity the part of the cells with an element, between 0 and 1
+	 * @param textdensity   the part of the cells with a text, between 0 and 1
+	 */
+	public SyntheticLevel(int lines, int cols, double entitydensity, double textdensity) {
+		this(lines, cols, entitydensity, textdensity,
+				new Word[][] { { NounTextEnum.BABA, OperatorEnum.IS, PropertyEnum.YOU },
+						{ NounTextEnum.ROCK, OperatorEnum.IS, PropertyEnum.PUSH },
+						{ NounTextEnum.WALL, OperatorEnum.IS, PropertyEnum.STOP },
+						{ NounTextEnum.FLAG, OperatorEnum.IS, PropertyEnum.WIN } });
+	}
+
+	/**
+	 * Create a new SyntheticLevel.
+	 * 
+	 * @param lines         the number of lines of the board
+	 * @param cols          the number of columns of the board
+	 * @param entitydensity the part of the cells with an element, between 0 and 1
+	 * @param textdensity   the part of the cells with a text, between 0 and 1
+	 * @param rules         the rules written on the first lines, one by line
+	 */
+	public SyntheticLevel(int lines, int cols, double entitydensity, double textdensity, Word[][] rules) {
+		if (lines < 4 || cols < 4) {
+			throw new IllegalArgumentException("board too small " + lines + "x" + cols);
+		}
+		this.lines = lines;
+		this.cols = cols;
+		this.entitydensity = entitydensity;
+		this.textdensity = textdensity;
+		this.rules = rules.clone();
+	}
+
+	/**
+	 * Write the level in a file.
+	 * 
+	 * @param path the file to write
+	 * @param seed the seed of the random placement of the entities
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path path, long seed) throws IOException {
+		var random = new Random(seed);
+		var entities = new LinkedHashMap<String, List<String>>();
+		var occupied = new boolean[(cols + 1) * (lines + 1)];
+		for (var j = 0; j < rules.length && j <= lines; j++) {
+			for (var i = 0; i < rules[j].length; i++) {
+				put(entities, header(rules[j][i]), i, j, occupied);
+			}
+		}
+		put(entities, "ni BABA", cols / 2, lines / 2, occupied);
+		var words = new ArrayList<Word>(List.of(NounTextEnum.values()));
+		words.remove(NounTextEnum.TEXT); // There is no element for the noun TEXT
+		words.addAll(List.of(OperatorEnum.values()));
+		words.addAll(List.of(PropertyEnum.values()));
+		for (var j = 0; j <= lines; j++) {
+			for (var i = 0; i <= cols; i++) {
+				if (occupied[j * (cols + 1) + i]) {
+					continue;
+				}
+				var draw = random.nextDouble();
+				if (draw < textdensity) {
+					put(entities, header(words.get(random.nextInt(words.size()))), i, j, occupied);
+				} else if (draw < textdensity + entitydensity) {
+					put(entities, "ni " + ELEMENTS[random.nextInt(ELEMENTS.length)], i, j, occupied);
+				}
+			}
+		}
+		try (var writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write(lines + " " + cols);
+			writer.newLine();
+			for (var entry : entities.entrySet()) {
+				writer.write(entry.getKey());
+				writer.newLine();
+				for (var coord : entry.getValue()) {
+					writer.write(coord);
+					writer.newLine();
+				}
+			}
+		}
+	}
+
+	// The line declaring the entity of a word in a level file
+	private static String header(Word word) {
+		if (word instanceof NounTextEnum) {
+			return "nt " + word;
+		} else if (word instanceof OperatorEnum) {
+			return "o " + word;
+		}
+		return "p " + word;
+	}
+
+	// Add the coordinate i,j to the entity of the header
+	private void put(LinkedHashMap<String, List<String>> entities, String header, int i, int j, boolean[] occupied) {
+		entities.computeIfAbsent(header, key -> new ArrayList<>()).add(i + " " + j);
+		occupied[j * (cols + 1) + i] = true;
+	}
+}
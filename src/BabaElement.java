@@ -7,8 +7,10 @@ import java.util.Objects;
  * characterized by the following information :
  * <ul>
  * <li>The type of the Element defined with a NounImgEnum</li>
- * <li>A list of rule, defined as a list of PropertyEnum</li>
- * <li>A list of coordinates, defined as a list of Coordinate</li>
+ * <li>A list of rule, defined as a list of PropertyEnum, and the same rules as
+ * a mask</li>
+ * <li>The EntityStore of its level and its type in the store, where its
+ * coordinates are</li>
  * </ul>
  * BabaElement manages for an element, where is he (his coordinates), his rules
  * and the comparison between another BabaElement
@@ -16,17 +18,18 @@ import java.util.Objects;
 public class BabaElement implements BabaEntity {
 	private final NounImgEnum element;
 	private final List<PropertyEnum> ruleOfThisElem;
-	private final List<Coordinate> coords;
+	private int rulemask;
+	private EntityStore store;
+	private int type;
 
 	/**
-	 * Create a new List of PropertyEnum and a new List of Coordinate
+	 * Create a new List of PropertyEnum, the element is in no level
 	 * 
 	 * @param type the argument type is a NounImgEnum
 	 */
 	public BabaElement(NounImgEnum type) {
 		this.element = type;
 		ruleOfThisElem = new ArrayList<>();
-		coords = new ArrayList<>();
 	}
 
 	@Override
@@ -39,6 +42,11 @@ public class BabaElement implements BabaEntity {
 		return ruleOfThisElem;
 	}
 
+	@Override
+	public int getRuleMask() {
+		return rulemask;
+	}
+
 	/**
 	 * Add a rule for a BabaElement
 	 * 
@@ -46,8 +54,9 @@ public class BabaElement implements BabaEntity {
 	 */
 	public void addRule(PropertyEnum prop) {
 		Objects.requireNonNull(prop);
-		if (!ruleOfThisElem.contains(prop)) {
+		if (!hasRule(prop)) {
 			ruleOfThisElem.add(prop);
+			rulemask |= prop.getMask();
 		}
 	}
 
@@ -59,6 +68,7 @@ public class BabaElement implements BabaEntity {
 	public void removeRule(PropertyEnum prop) {
 		Objects.requireNonNull(prop);
 		ruleOfThisElem.remove(prop);
+		rulemask &= ~prop.getMask();
 	}
 
 	@Override
@@ -76,29 +86,28 @@ public class BabaElement implements BabaEntity {
 	}
 
 	@Override
-	public void addCoord(Coordinate coord) {
-		Objects.requireNonNull(coord);
-		coords.add(coord);
+	public void attach(EntityStore store, int type) {
+		this.store = Objects.requireNonNull(store);
+		this.type = type;
 	}
 
 	@Override
-	public void removeCoord(Coordinate coord) {
-		Objects.requireNonNull(coord);
-		coords.remove(coord);
+	public int getType() {
+		return store == null ? -1 : type;
 	}
 
 	@Override
 	public List<Coordinate> getCoords() {
-		return coords;
+		return store == null ? List.of() : store.coordsOf(type);
 	}
 
 	@Override
 	public int compareTo(BabaEntity o) {
 		if (o instanceof Text) {
 			return -10;
-		} else if (ruleOfThisElem.contains(PropertyEnum.YOU)) {
+		} else if (hasRule(PropertyEnum.YOU) && !o.hasRule(PropertyEnum.YOU)) {
 			return 10;
-		} else if (o.getRuleOfElem().contains(PropertyEnum.YOU)) {
+		} else if (!hasRule(PropertyEnum.YOU) && o.hasRule(PropertyEnum.YOU)) {
 			return -10;
 		}
 		var elem = (BabaElement) o;
@@ -2,7 +2,9 @@ import java.util.List;
 import java.util.Objects;
 
 /**
- * BabaEntity defines either a BabaElement or a Text.
+ * BabaEntity defines either a BabaElement or a Text. The coordinates of an
+ * entity are kept in the EntityStore of its level, the entity is a view over
+ * them.
  */
 public interface BabaEntity extends Comparable<BabaEntity> {
 	/**
@@ -19,6 +21,24 @@ public interface BabaEntity extends Comparable<BabaEntity> {
 	 */
 	List<PropertyEnum> getRuleOfElem();
 
+	/**
+	 * Returns the properties of the element as a mask, each property is the bit
+	 * given by {@link PropertyEnum#getMask()}
+	 * 
+	 * @return the mask of the properties of the element
+	 */
+	int getRuleMask();
+
+	/**
+	 * Returns true if the element has the property
+	 * 
+	 * @param rule the property to check
+	 * @return true if the element has the property
+	 */
+	default boolean hasRule(PropertyEnum rule) {
+		return (getRuleMask() & rule.getMask()) != 0;
+	}
+
 	/**
 	 * Returns a string representation of the entity. The representation contains
 	 * the name of the entity.
@@ -29,23 +49,29 @@ public interface BabaEntity extends Comparable<BabaEntity> {
 	String toString();
 
 	/**
-	 * Add a coordinate for an entity
+	 * Attach the entity to the store of its level. It is called by the
+	 * LevelManager when the entity is added to the level, the coordinates are then
+	 * added and removed by the LevelManager.
 	 * 
-	 * @param coord the coordinate to add
+	 * @param store the store of the level
+	 * @param type  the type of the entity in the store
 	 */
-	void addCoord(Coordinate coord);
+	void attach(EntityStore store, int type);
 
 	/**
-	 * Remove a coordinate for an entity
+	 * Returns the type of the entity in the store of its level, which is its index
+	 * in the level.
 	 * 
-	 * @param coord the coordinate to remove
+	 * @return the type of the entity, -1 if the entity is not in a level
 	 */
-	void removeCoord(Coordinate coord);
+	int getType();
 
 	/**
-	 * Returns the list of coordinate
+	 * Returns the list of coordinate, a view of the level which can not be
+	 * modified
 	 * 
-	 * @return list of coordinate, where the entity is in the level
+	 * @return list of coordinate, where the entity is in the level, an empty list
+	 *         if the entity is not in a level
 	 */
 	List<Coordinate> getCoords();
 
@@ -98,50 +124,6 @@ public interface BabaEntity extends Comparable<BabaEntity> {
 		return getCoords().stream().filter(coordinate -> coordinate.equals(coord)).count();
 	}
 
-	/**
-	 * Check and apply the rule <b>melt</b> and <b>hot</b>.
-	 * <p>
-	 * Check if the entity is <b>MELT</b>. If yes, remove the coordinate of the
-	 * entity if the entity is on the list of coordinate : <b>lstcoordshot</b>
-	 * 
-	 * @param lstcoordshot list of coordinate where there is an entity with the
-	 *                     property hot
-	 */
-	default void checkAndDeleteMeltandHot(List<Coordinate> lstcoordshot) {
-		if (!lstcoordshot.isEmpty() && getRuleOfElem().contains(PropertyEnum.MELT)) {
-			var coordsiterator = getCoords().iterator();
-			while (coordsiterator.hasNext()) {
-				var coord = coordsiterator.next();
-				if (lstcoordshot.contains(coord)) {
-					coordsiterator.remove();
-				}
-			}
-		}
-
-	}
-
-	/**
-	 * Check and apply the rule <b>defeat</b>.
-	 * <p>
-	 * Check if the entity is <b>YOU</b>. If yes, remove the coordinate of the
-	 * entity if the entity is on the list of coordinate : <b>lstcoordsdefeat</b>
-	 * 
-	 * @param lstcoordsdefeat list of coordinate where there is an entity with the
-	 *                        property defeat
-	 */
-	default void checkDefeat(List<Coordinate> lstcoordsdefeat) {
-		Objects.requireNonNull(lstcoordsdefeat);
-		if (!lstcoordsdefeat.isEmpty() && getRuleOfElem().contains(PropertyEnum.YOU)) {
-			var coordsiterator = getCoords().iterator();
-			while (coordsiterator.hasNext()) {
-				var coord = coordsiterator.next();
-				if (lstcoordsdefeat.contains(coord)) {
-					coordsiterator.remove();
-				}
-			}
-		}
-	}
-
 	/**
 	 * Check and apply the rule <b>win</b>.
 	 * <p>
@@ -155,7 +137,7 @@ public interface BabaEntity extends Comparable<BabaEntity> {
 	 */
 	default boolean checkWin(List<Coordinate> lstcoordswin) {
 		Objects.requireNonNull(lstcoordswin);
-		if (!lstcoordswin.isEmpty() && getRuleOfElem().contains(PropertyEnum.YOU)) {
+		if (!lstcoordswin.isEmpty() && hasRule(PropertyEnum.YOU)) {
 			for (var coord : getCoords()) {
 				if (lstcoordswin.contains(coord)) {
 					return true;
@@ -1,8 +1,8 @@
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
 
 import javax.swing.ImageIcon;
 
@@ -15,8 +15,14 @@ import javax.swing.ImageIcon;
  * <li>lengthsize of the screen</li>
  * <li>widthsize of the screen</li>
  * <li>squaresize of an entity</li>
+ * <li>The image of the board as it was last drawn</li>
+ * <li>The cells to draw again</li>
+ * <li>The TurnMetrics which measures the draws, if there is one</li>
+ * <li>The entities of the cell being drawn, sorted in their drawing order</li>
  * </ul>
- * BabaGameView display the board, the winning and the loosing views.
+ * BabaGameView display the board, the winning and the loosing views. The board
+ * is drawn once in an image, then only the cells which have changed since the
+ * last draw are drawn again in the image and copied on the screen.
  */
 public class BabaGameView implements GameView {
 
@@ -25,6 +31,12 @@ public class BabaGameView implements GameView {
 	private final int lengthsize;
 	private final int widthsize;
 	private final int squaresize;
+	private BufferedImage background;
+	private LevelManager drawnlevel;
+	private final BitSet changedcells;
+	private boolean repaintall;
+	private TurnMetrics metrics;
+	private BabaEntity[] drawbuffer = new BabaEntity[8];
 
 	// Private constructor, call by the static method : initGameGraphics
 	private BabaGameView(int xOrigin, int yOrigin, int lengthsize, int widthsize, int squareSize) {
@@ -33,6 +45,7 @@ public class BabaGameView implements GameView {
 		this.lengthsize = lengthsize;
 		this.widthsize = widthsize;
 		this.squaresize = squareSize;
+		changedcells = new BitSet();
 	}
 
 	/**
@@ -54,25 +67,92 @@ public class BabaGameView implements GameView {
 		return new BabaGameView(xorigin, yorigin, length, width, squaresize);
 	}
 
-	@Override
-	public void draw(Graphics2D graphics, LevelManager level, LevelDesign leveldesign) {
-		graphics.setColor(Color.darkGray);
-		graphics.fill(new Rectangle2D.Float(0, 0, lengthsize, widthsize));
-		graphics.setColor(Color.BLACK);
-		graphics.fill(new Rectangle2D.Float(xorigin, yorigin, squaresize * (level.getCols() + 1),
-				squaresize * (level.getLines() + 1)));
+	/**
+	 * Draw all the board again at the next draw, and not only the cells which
+	 * have changed.
+	 */
+	public void repaintAll() {
+		background = null;
+	}
 
-		var elems = level.getData();
-		ArrayList<BabaEntity> lstelems = new ArrayList<>(elems);
+	/**
+	 * Measure the next draws with a TurnMetrics, the draws are not measured
+	 * anymore if it is null.
+	 * 
+	 * @param metrics the TurnMetrics which measures the draws, or null
+	 */
+	public void setMetrics(TurnMetrics metrics) {
+		this.metrics = metrics;
+	}
 
-		Collections.sort(lstelems);
-		var hashimg = leveldesign.getDataImage();
+	@Override
+	public void draw(Graphics2D graphics, LevelManager level, LevelDesign leveldesign) {
+		if (metrics != null) {
+			metrics.beginDraw();
+		}
+		leveldesign.scale(squaresize); // The images are scaled once for all the draws
+		var width = level.getCols() + 1;
+		level.takeChangedCells(changedcells);
+		if (background == null || drawnlevel != level) { // All the cells are drawn in a new image
+			background = new BufferedImage(squaresize * width, squaresize * (level.getLines() + 1),
+					BufferedImage.TYPE_INT_RGB);
+			drawnlevel = level;
+			changedcells.set(0, width * (level.getLines() + 1));
+			repaintall = true;
+		}
+		var backgraphics = background.createGraphics();
+		try {
+			for (var cell = changedcells.nextSetBit(0); cell >= 0; cell = changedcells.nextSetBit(cell + 1)) {
+				drawCell(backgraphics, level, leveldesign, cell % width, cell / width);
+			}
+		} finally {
+			backgraphics.dispose();
+		}
+		if (repaintall) {
+			graphics.setColor(Color.darkGray);
+			graphics.fill(new Rectangle2D.Float(0, 0, lengthsize, widthsize));
+			graphics.drawImage(background, xorigin, yorigin, null);
+			repaintall = false;
+		} else {
+			for (var cell = changedcells.nextSetBit(0); cell >= 0; cell = changedcells.nextSetBit(cell + 1)) {
+				var x = cell % width * squaresize;
+				var y = cell / width * squaresize;
+				graphics.drawImage(background, xorigin + x, yorigin + y, xorigin + x + squaresize,
+						yorigin + y + squaresize, x, y, x + squaresize, y + squaresize, null);
+			}
+		}
+		if (metrics != null) {
+			metrics.endDraw(changedcells.cardinality());
+		}
+		changedcells.clear();
+	}
 
-		for (var elem : lstelems) {
-			for (var coord : elem.getCoords()) {
-				graphics.drawImage(hashimg.get(elem).getImage(), coord.i() * squaresize + xorigin,
-						coord.j() * squaresize + yorigin, squaresize, squaresize, null);
+	// Draw the entities of the cell i,j in the image of the board. The entities
+	// are drawn in their natural order, then in the order of the level. The board
+	// keeps a cell in the order of the level, so a stable insertion sort of the
+	// cell in drawbuffer gives the drawing order without allocating
+	private void drawCell(Graphics2D graphics, LevelManager level, LevelDesign leveldesign, int i, int j) {
+		var x = i * squaresize;
+		var y = j * squaresize;
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(x, y, squaresize, squaresize);
+		var entities = level.getEntities(i, j);
+		var size = entities.size();
+		if (size > drawbuffer.length) {
+			drawbuffer = new BabaEntity[Math.max(size, 2 * drawbuffer.length)];
+		}
+		for (var n = 0; n < size; n++) {
+			var entity = entities.get(n);
+			var k = n;
+			while (k > 0 && drawbuffer[k - 1].compareTo(entity) > 0) {
+				drawbuffer[k] = drawbuffer[k - 1];
+				k--;
 			}
+			drawbuffer[k] = entity;
+		}
+		for (var n = 0; n < size; n++) {
+			leveldesign.draw(graphics, LevelDesign.spriteOf(drawbuffer[n]), x, y);
+			drawbuffer[n] = null;
 		}
 	}
 
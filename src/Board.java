@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Board indexes the entities of a level by cell. This class is characterized by
+ * the following information :
+ * <ul>
+ * <li>The width of the board (number of columns + 1)</li>
+ * <li>The height of the board (number of lines + 1)</li>
+ * <li>For each cell, the list of the entities on it</li>
+ * <li>For each cell, the mask of all the properties of the entities on it</li>
+ * <li>The chunks of the cells, in a ChunkedGrid</li>
+ * </ul>
+ * An entity appears in a cell as many times as it has this coordinate. Board
+ * gives the entities of a cell in constant time, it has to be kept up to date
+ * by the LevelManager at each add or remove of a coordinate, and each time the
+ * properties of an entity change. The entities of a cell are kept in the order
+ * of their type, which is the order of the level, so a cell gives the same
+ * list whatever the order its entities came in.
+ * <p>
+ * A cell is packed in an int, j * width + i, given by
+ * {@link #cellOf(int, int)}. The engine works on the packed cells, the methods
+ * taking a Coordinate are kept for the callers outside the engine. The cells are kept in chunks created
+ * when an entity is first added on them, a large board which is mostly empty
+ * only keeps the chunks around its entities.
+ */
+public class Board {
+	private final int width;
+	private final int height;
+	private final ChunkedGrid<Chunk> chunks;
+
+	// The cells of a chunk, by their offset in the chunk
+	private static class Chunk {
+		private final ArrayList<?>[] entities = new ArrayList<?>[ChunkedGrid.SIZE * ChunkedGrid.SIZE];
+		private final int[] masks = new int[ChunkedGrid.SIZE * ChunkedGrid.SIZE];
+
+		@SuppressWarnings("unchecked")
+		private ArrayList<BabaEntity> get(int offset) {
+			return (ArrayList<BabaEntity>) entities[offset];
+		}
+	}
+
+	/**
+	 * Create a new empty Board.
+	 *
+	 * @param width  the number of cells on a line
+	 * @param height the number of cells on a column
+	 */
+	public Board(int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("negative size " + width + "x" + height);
+		}
+		if ((long) width * height > Integer.MAX_VALUE) { // The cells are packed in ints
+			throw new IllegalArgumentException("board too big " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		chunks = new ChunkedGrid<>(Chunk::new);
+	}
+
+	/**
+	 * Returns true if the coordinate is in the limits of the board.
+	 *
+	 * @param coord the coordinate to check
+	 * @return true if the coordinate is in the limits of the board
+	 */
+	public boolean isInside(Coordinate coord) {
+		Objects.requireNonNull(coord);
+		return isInside(coord.i(), coord.j());
+	}
+
+	/**
+	 * Returns true if the cell i,j is in the limits of the board.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return true if the cell is in the limits of the board
+	 */
+	public boolean isInside(int i, int j) {
+		return i >= 0 && i < width && j >= 0 && j < height;
+	}
+
+	/**
+	 * Returns the cell i,j packed in an int.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the cell, j * width + i
+	 * @throws IndexOutOfBoundsException if the cell is outside the board
+	 */
+	public int cellOf(int i, int j) {
+		if (!isInside(i, j)) {
+			throw new IndexOutOfBoundsException(new Coordinate(i, j) + " is outside the board");
+		}
+		return j * width + i;
+	}
+
+	/**
+	 * Returns the column of a cell.
+	 *
+	 * @param cell the cell, j * width + i
+	 * @return the column of the cell
+	 */
+	public int iOf(int cell) {
+		return cell % width;
+	}
+
+	/**
+	 * Returns the line of a cell.
+	 *
+	 * @param cell the cell, j * width + i
+	 * @return the line of the cell
+	 */
+	public int jOf(int cell) {
+		return cell / width;
+	}
+
+	private void checkCell(int cell) {
+		if (cell < 0 || cell >= width * height) {
+			throw new IndexOutOfBoundsException("cell " + cell + " is outside the board");
+		}
+	}
+
+	/**
+	 * Add an entity on a cell.
+	 *
+	 * @param coord  the coordinate of the cell
+	 * @param entity the entity to add
+	 */
+	public void add(Coordinate coord, BabaEntity entity) {
+		add(cellOf(coord.i(), coord.j()), entity);
+	}
+
+	/**
+	 * Add an entity on a cell, after the entities of the cell with a lower or the
+	 * same type.
+	 *
+	 * @param cell   the cell, j * width + i
+	 * @param entity the entity to add
+	 */
+	public void add(int cell, BabaEntity entity) {
+		Objects.requireNonNull(entity);
+		checkCell(cell);
+		var i = cell % width;
+		var j = cell / width;
+		var chunk = chunks.getOrCreate(i, j);
+		var offset = ChunkedGrid.offsetOf(i, j);
+		var entities = chunk.get(offset);
+		if (entities == null) {
+			entities = new ArrayList<>(2);
+			chunk.entities[offset] = entities;
+		}
+		var index = entities.size();
+		while (index > 0 && entities.get(index - 1).getType() > entity.getType()) {
+			index--;
+		}
+		entities.add(index, entity);
+		chunk.masks[offset] |= entity.getRuleMask();
+	}
+
+	/**
+	 * Remove one occurrence of an entity from a cell.
+	 *
+	 * @param coord  the coordinate of the cell
+	 * @param entity the entity to remove
+	 */
+	public void remove(Coordinate coord, BabaEntity entity) {
+		remove(cellOf(coord.i(), coord.j()), entity);
+	}
+
+	/**
+	 * Remove one occurrence of an entity from a cell.
+	 *
+	 * @param cell   the cell, j * width + i
+	 * @param entity the entity to remove
+	 */
+	public void remove(int cell, BabaEntity entity) {
+		Objects.requireNonNull(entity);
+		checkCell(cell);
+		var i = cell % width;
+		var j = cell / width;
+		var chunk = chunks.get(i, j);
+		if (chunk == null) {
+			return;
+		}
+		var offset = ChunkedGrid.offsetOf(i, j);
+		var entities = chunk.get(offset);
+		if (entities != null) {
+			entities.remove(entity);
+			chunk.masks[offset] = maskOf(entities);
+		}
+	}
+
+	/**
+	 * Compute again the mask of the properties of a cell. It has to be called on
+	 * the cells of an entity whose properties have changed.
+	 *
+	 * @param coord the coordinate of the cell
+	 */
+	public void refresh(Coordinate coord) {
+		refresh(cellOf(coord.i(), coord.j()));
+	}
+
+	/**
+	 * Compute again the mask of the properties of a cell.
+	 *
+	 * @param cell the cell, j * width + i
+	 */
+	public void refresh(int cell) {
+		checkCell(cell);
+		var i = cell % width;
+		var j = cell / width;
+		var chunk = chunks.get(i, j);
+		if (chunk != null) {
+			var offset = ChunkedGrid.offsetOf(i, j);
+			var entities = chunk.get(offset);
+			chunk.masks[offset] = entities == null ? 0 : maskOf(entities);
+		}
+	}
+
+	// Mask of all the properties of the entities of a cell, walked by index so
+	// that no iterator is allocated
+	private static int maskOf(List<BabaEntity> cell) {
+		var mask = 0;
+		for (var x = 0; x < cell.size(); x++) {
+			mask |= cell.get(x).getRuleMask();
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns the entities on a cell. The returned list is a view of the board and
+	 * must not be modified.
+	 *
+	 * @param coord the coordinate of the cell
+	 * @return the entities on the cell, an empty list if the cell is empty or
+	 *         outside the board
+	 */
+	public List<BabaEntity> get(Coordinate coord) {
+		return get(coord.i(), coord.j());
+	}
+
+	/**
+	 * Returns the entities on the cell i,j. The returned list is a view of the
+	 * board and must not be modified.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the entities on the cell, an empty list if the cell is empty or
+	 *         outside the board
+	 */
+	public List<BabaEntity> get(int i, int j) {
+		if (!isInside(i, j)) {
+			return List.of();
+		}
+		var chunk = chunks.get(i, j);
+		var entities = chunk == null ? null : chunk.get(ChunkedGrid.offsetOf(i, j));
+		return entities == null ? List.of() : entities;
+	}
+
+	/**
+	 * Returns the entities on a cell. The returned list is a view of the board and
+	 * must not be modified.
+	 *
+	 * @param cell the cell, j * width + i
+	 * @return the entities on the cell, an empty list if the cell is empty
+	 */
+	public List<BabaEntity> get(int cell) {
+		checkCell(cell);
+		return get(cell % width, cell / width);
+	}
+
+	/**
+	 * Returns the number of times an entity is on a cell.
+	 *
+	 * @param coord  the coordinate of the cell
+	 * @param entity the entity to count
+	 * @return the number of times the entity is on the cell
+	 */
+	public int count(Coordinate coord, BabaEntity entity) {
+		return isInside(coord) ? count(coord.j() * width + coord.i(), entity) : 0;
+	}
+
+	/**
+	 * Returns the number of times an entity is on a cell.
+	 *
+	 * @param cell   the cell, j * width + i
+	 * @param entity the entity to count
+	 * @return the number of times the entity is on the cell
+	 */
+	public int count(int cell, BabaEntity entity) {
+		Objects.requireNonNull(entity);
+		var entities = get(cell);
+		var count = 0;
+		for (var x = 0; x < entities.size(); x++) {
+			if (entities.get(x).equals(entity)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the mask of all the properties of the entities on a cell.
+	 *
+	 * @param coord the coordinate of the cell
+	 * @return the mask of the properties on the cell, 0 if the cell is outside the
+	 *         board
+	 */
+	public int getMask(Coordinate coord) {
+		return getMask(coord.i(), coord.j());
+	}
+
+	/**
+	 * Returns the mask of all the properties of the entities on the cell i,j.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the mask of the properties on the cell, 0 if the cell is outside the
+	 *         board
+	 */
+	public int getMask(int i, int j) {
+		if (!isInside(i, j)) {
+			return 0;
+		}
+		var chunk = chunks.get(i, j);
+		return chunk == null ? 0 : chunk.masks[ChunkedGrid.offsetOf(i, j)];
+	}
+
+	/**
+	 * Returns the mask of all the properties of the entities on a cell.
+	 *
+	 * @param cell the cell, j * width + i
+	 * @return the mask of the properties on the cell
+	 */
+	public int getMask(int cell) {
+		checkCell(cell);
+		return getMask(cell % width, cell / width);
+	}
+
+	/**
+	 * Returns true if an entity of the cell has the property.
+	 *
+	 * @param coord the coordinate of the cell
+	 * @param rule  the property to check
+	 * @return true if an entity of the cell has the property
+	 */
+	public boolean hasRule(Coordinate coord, PropertyEnum rule) {
+		return (getMask(coord) & rule.getMask()) != 0;
+	}
+
+	/**
+	 * Returns true if there is nothing on the cell.
+	 *
+	 * @param coord the coordinate of the cell
+	 * @return true if there is nothing on the cell
+	 */
+	public boolean isEmpty(Coordinate coord) {
+		return get(coord).isEmpty();
+	}
+
+	/**
+	 * Returns the number of cells on a line.
+	 *
+	 * @return the number of cells on a line
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of cells on a column.
+	 *
+	 * @return the number of cells on a column
+	 */
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,182 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * ChunkedGrid cuts a grid of cells in square chunks, created only when a cell
+ * of the chunk is used. This class is characterized by the following
+ * information :
+ * <ul>
+ * <li>A hash table of the chunks created, by the coordinates of the chunk</li>
+ * <li>The factory of the chunks</li>
+ * <li>The slot of the last chunk found, the next cell is usually in the same
+ * chunk</li>
+ * </ul>
+ * A chunk is an object given by the factory, usually an array of SIZE * SIZE
+ * cells where the cell i,j is at {@link #offsetOf(int, int)}. A grid with few
+ * filled cells only keeps the chunks around them, so a very large board which
+ * is mostly empty takes little memory. The hash table uses open addressing on
+ * the keys packed in longs, a lookup allocates nothing.
+ * <p>
+ * {@link #get(int, int)} can be called by several threads at once, as long as
+ * no chunk is created meanwhile : the cache of the last chunk is a single int,
+ * the slot, and the key in the slot is checked before its chunk is returned, so
+ * a thread never gets the chunk of another cell. {@link #getOrCreate(int, int)}
+ * is not thread-safe.
+ *
+ * @param <C> the type of the chunks
+ */
+public class ChunkedGrid<C> {
+	/**
+	 * The log2 of the size of a chunk
+	 */
+	public static final int SHIFT = 3;
+	/**
+	 * The number of cells on a side of a chunk
+	 */
+	public static final int SIZE = 1 << SHIFT;
+	private static final int MASK = SIZE - 1;
+	private static final long EMPTY = -1;
+
+	private final Supplier<? extends C> factory;
+	private long[] keys;
+	private Object[] chunks;
+	private int size;
+	private int lastslot; // Only a hint, the key in the slot is checked before its chunk is used
+
+	/**
+	 * Create a new ChunkedGrid without any chunk.
+	 *
+	 * @param factory the factory of a new empty chunk
+	 */
+	public ChunkedGrid(Supplier<? extends C> factory) {
+		this.factory = Objects.requireNonNull(factory);
+		keys = new long[16];
+		Arrays.fill(keys, EMPTY);
+		chunks = new Object[16];
+	}
+
+	/**
+	 * Returns the place of the cell i,j in its chunk.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the place of the cell in its chunk, from 0 to SIZE * SIZE - 1
+	 */
+	public static int offsetOf(int i, int j) {
+		return (j & MASK) << SHIFT | (i & MASK);
+	}
+
+	// The key of the chunk of the cell i,j, the cell can not be negative
+	private static long keyOf(int i, int j) {
+		return (long) (j >>> SHIFT) << 32 | (i >>> SHIFT);
+	}
+
+	// The first slot of a key in the table
+	private static int slotOf(long key, int length) {
+		var hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32 ^ hash) & (length - 1);
+	}
+
+	/**
+	 * Returns the chunk of the cell i,j.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the chunk of the cell, null if it is not created
+	 */
+	@SuppressWarnings("unchecked")
+	public C get(int i, int j) {
+		var key = keyOf(i, j);
+		var slot = lastslot; // The tables only grow, the slot is always inside
+		if (keys[slot] == key) {
+			return (C) chunks[slot];
+		}
+		for (slot = slotOf(key, keys.length);; slot = (slot + 1) & (keys.length - 1)) {
+			if (keys[slot] == key) {
+				lastslot = slot;
+				return (C) chunks[slot];
+			}
+			if (keys[slot] == EMPTY) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the chunk of the cell i,j, it is created if it does not exist.
+	 *
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the chunk of the cell
+	 */
+	public C getOrCreate(int i, int j) {
+		var chunk = get(i, j);
+		if (chunk != null) {
+			return chunk;
+		}
+		if (2 * (size + 1) > keys.length) { // The table is kept half empty
+			grow();
+		}
+		var key = keyOf(i, j);
+		var slot = slotOf(key, keys.length);
+		while (keys[slot] != EMPTY) {
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		chunk = Objects.requireNonNull(factory.get());
+		keys[slot] = key;
+		chunks[slot] = chunk;
+		size++;
+		lastslot = slot;
+		return chunk;
+	}
+
+	private void grow() {
+		var oldkeys = keys;
+		var oldchunks = chunks;
+		keys = new long[oldkeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		chunks = new Object[keys.length];
+		for (var x = 0; x < oldkeys.length; x++) {
+			if (oldkeys[x] != EMPTY) {
+				var slot = slotOf(oldkeys[x], keys.length);
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldkeys[x];
+				chunks[slot] = oldchunks[x];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of chunks created.
+	 *
+	 * @return the number of chunks created
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of cells from the cell i,j to the end of its chunk, in
+	 * the direction di,dj, the cell included. The direction has to be one of the
+	 * four directions of the board.
+	 *
+	 * @param i  the column of the cell
+	 * @param j  the line of the cell
+	 * @param di the direction on the columns
+	 * @param dj the direction on the lines
+	 * @return the number of cells left in the chunk, from 1 to SIZE
+	 */
+	public static int remaining(int i, int j, int di, int dj) {
+		if (di > 0) {
+			return SIZE - (i & MASK);
+		} else if (di < 0) {
+			return (i & MASK) + 1;
+		} else if (dj > 0) {
+			return SIZE - (j & MASK);
+		}
+		return (j & MASK) + 1;
+	}
+}
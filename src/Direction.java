@@ -0,0 +1,50 @@
+/**
+ * Enum of the possible moving directions
+ * 
+ */
+public enum Direction {
+	/**
+	 * Move to the line above
+	 */
+	UP(0, -1),
+	/**
+	 * Move to the line below
+	 */
+	DOWN(0, 1),
+	/**
+	 * Move to the column on the left
+	 */
+	LEFT(-1, 0),
+	/**
+	 * Move to the column on the right
+	 */
+	RIGHT(1, 0);
+
+	private final int di;
+	private final int dj;
+
+	// Private constructor of Direction
+	private Direction(int di, int dj) {
+		this.di = di;
+		this.dj = dj;
+	}
+
+	/**
+	 * Returns the move on the columns, -1, 0 or 1
+	 * 
+	 * @return the move on the columns
+	 */
+	public int getDi() {
+		return di;
+	}
+
+	/**
+	 * Returns the move on the lines, -1, 0 or 1
+	 * 
+	 * @return the move on the lines
+	 */
+	public int getDj() {
+		return dj;
+	}
+
+}
@@ -0,0 +1,18 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * DrawEvent is the Flight Recorder event of a draw of the board. The event lasts
+ * the whole draw.
+ */
+@Name("baba.Draw")
+@Label("Draw")
+@Category("Baba Is You")
+@Description("A draw of the board on the screen")
+public class DrawEvent extends Event {
+	@Label("Cells Repainted")
+	int cellsrepainted;
+}
@@ -0,0 +1,371 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * EntityStore keeps the tiles of a level in parallel arrays of ints. This class
+ * is characterized by the following information :
+ * <ul>
+ * <li>For each tile, its cell packed in an int, j * width + i, and its type,
+ * the index of its entity in the level</li>
+ * <li>For each type, the chain of its tiles, linked by their index, and the
+ * number of tiles</li>
+ * <li>For each cell, the chain of the tiles on it, its first tile is kept in a
+ * ChunkedGrid</li>
+ * <li>The free list of the tiles removed, reused by the next adds</li>
+ * </ul>
+ * A tile is given by its index in the arrays. The entities of a level are views
+ * over their chain of tiles, a move changes the cell of a tile in place,
+ * without allocating anything. The arrays grow by doubling, a removed tile is
+ * only unlinked and put in the free list.
+ */
+public class EntityStore {
+	private static final int NONE = -1;
+	private final int width;
+	private final int height;
+	private int[] cells;
+	private int[] types;
+	private int[] nexts; // Next tile of the same type, or next free tile
+	private int[] prevs; // Previous tile of the same type
+	private int[] cellnexts; // Next tile of the same cell
+	private final ChunkedGrid<int[]> cellheads;
+	private int[] heads;
+	private int[] tails;
+	private int[] counts;
+	private int nbtypes;
+	private int size; // Number of tiles used or freed
+	private int free;
+	private int modcount; // Number of adds, removes and moves, for the views
+
+	/**
+	 * Create a new empty EntityStore.
+	 *
+	 * @param width  the number of cells on a line
+	 * @param height the number of cells on a column
+	 */
+	public EntityStore(int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("negative size " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		cells = new int[16];
+		types = new int[16];
+		nexts = new int[16];
+		prevs = new int[16];
+		cellnexts = new int[16];
+		cellheads = new ChunkedGrid<>(() -> {
+			var heads = new int[ChunkedGrid.SIZE * ChunkedGrid.SIZE];
+			Arrays.fill(heads, NONE);
+			return heads;
+		});
+		heads = new int[8];
+		tails = new int[8];
+		counts = new int[8];
+		free = NONE;
+	}
+
+	/**
+	 * Add a new type, without any tile.
+	 *
+	 * @return the new type
+	 */
+	public int addType() {
+		if (nbtypes == heads.length) {
+			heads = Arrays.copyOf(heads, nbtypes * 2);
+			tails = Arrays.copyOf(tails, nbtypes * 2);
+			counts = Arrays.copyOf(counts, nbtypes * 2);
+		}
+		heads[nbtypes] = NONE;
+		tails[nbtypes] = NONE;
+		return nbtypes++;
+	}
+
+	private void checkCell(int cell) {
+		if (cell < 0 || cell >= width * height) {
+			throw new IndexOutOfBoundsException("cell " + cell + " is outside the board");
+		}
+	}
+
+	private void checkType(int type) {
+		Objects.checkIndex(type, nbtypes);
+	}
+
+	/**
+	 * Add a tile of a type on a cell, at the end of the chain of the type.
+	 *
+	 * @param type the type of the tile
+	 * @param cell the cell, j * width + i
+	 * @return the new tile
+	 */
+	public int add(int type, int cell) {
+		checkType(type);
+		checkCell(cell);
+		int tile;
+		if (free != NONE) {
+			tile = free;
+			free = nexts[tile];
+		} else {
+			if (size == cells.length) {
+				grow();
+			}
+			tile = size++;
+		}
+		cells[tile] = cell;
+		types[tile] = type;
+		nexts[tile] = NONE;
+		prevs[tile] = tails[type];
+		if (tails[type] == NONE) {
+			heads[type] = tile;
+		} else {
+			nexts[tails[type]] = tile;
+		}
+		tails[type] = tile;
+		counts[type]++;
+		linkCell(tile, cell);
+		modcount++;
+		return tile;
+	}
+
+	/**
+	 * Make room for a number of tiles to add, so that the arrays do not grow
+	 * while they are added. It is used when the number of tiles of a level is
+	 * known before it is loaded.
+	 *
+	 * @param tiles the number of tiles which will be added
+	 */
+	public void reserve(int tiles) {
+		if (tiles < 0) {
+			throw new IllegalArgumentException("negative number of tiles " + tiles);
+		}
+		if ((long) size + tiles > cells.length) {
+			grow((int) Math.min(Integer.MAX_VALUE - 8, (long) size + tiles));
+		}
+	}
+
+	private void grow() {
+		grow(cells.length * 2);
+	}
+
+	private void grow(int length) {
+		cells = Arrays.copyOf(cells, length);
+		types = Arrays.copyOf(types, length);
+		nexts = Arrays.copyOf(nexts, length);
+		prevs = Arrays.copyOf(prevs, length);
+		cellnexts = Arrays.copyOf(cellnexts, length);
+	}
+
+	/**
+	 * Remove a tile, its index can be returned again by the next add.
+	 *
+	 * @param tile the tile to remove
+	 */
+	public void remove(int tile) {
+		checkTile(tile);
+		unlinkCell(tile);
+		var type = types[tile];
+		if (prevs[tile] == NONE) {
+			heads[type] = nexts[tile];
+		} else {
+			nexts[prevs[tile]] = nexts[tile];
+		}
+		if (nexts[tile] == NONE) {
+			tails[type] = prevs[tile];
+		} else {
+			prevs[nexts[tile]] = prevs[tile];
+		}
+		counts[type]--;
+		types[tile] = NONE;
+		nexts[tile] = free;
+		free = tile;
+		modcount++;
+	}
+
+	/**
+	 * Move a tile to another cell. The tile keeps its index and its place in the
+	 * chain of its type.
+	 *
+	 * @param tile the tile to move
+	 * @param cell the new cell, j * width + i
+	 */
+	public void move(int tile, int cell) {
+		checkTile(tile);
+		checkCell(cell);
+		unlinkCell(tile);
+		cells[tile] = cell;
+		linkCell(tile, cell);
+		modcount++;
+	}
+
+	// Add the tile at the beginning of the chain of the cell
+	private void linkCell(int tile, int cell) {
+		var i = cell % width;
+		var j = cell / width;
+		var heads = cellheads.getOrCreate(i, j);
+		var offset = ChunkedGrid.offsetOf(i, j);
+		cellnexts[tile] = heads[offset];
+		heads[offset] = tile;
+	}
+
+	// Remove the tile from the chain of its cell
+	private void unlinkCell(int tile) {
+		var i = cells[tile] % width;
+		var j = cells[tile] / width;
+		var heads = cellheads.get(i, j);
+		var offset = ChunkedGrid.offsetOf(i, j);
+		if (heads[offset] == tile) {
+			heads[offset] = cellnexts[tile];
+			return;
+		}
+		var previous = heads[offset];
+		while (cellnexts[previous] != tile) {
+			previous = cellnexts[previous];
+		}
+		cellnexts[previous] = cellnexts[tile];
+	}
+
+	private void checkTile(int tile) {
+		Objects.checkIndex(tile, size);
+		if (types[tile] == NONE) {
+			throw new IllegalArgumentException("tile " + tile + " is removed");
+		}
+	}
+
+	/**
+	 * Returns a tile of a type on a cell.
+	 *
+	 * @param type the type of the tile
+	 * @param cell the cell, j * width + i
+	 * @return a tile of the type on the cell, -1 if there is none or if the cell is
+	 *         outside the board
+	 */
+	public int find(int type, int cell) {
+		if (cell < 0 || cell >= width * height) {
+			return NONE;
+		}
+		var i = cell % width;
+		var j = cell / width;
+		var heads = cellheads.get(i, j);
+		if (heads == null) {
+			return NONE;
+		}
+		for (var tile = heads[ChunkedGrid.offsetOf(i, j)]; tile != NONE; tile = cellnexts[tile]) {
+			if (types[tile] == type) {
+				return tile;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the first tile of a type, -1 if the type has no tile. The tiles of a
+	 * type are walked with {@link #next(int)}.
+	 *
+	 * @param type the type
+	 * @return the first tile of the type
+	 */
+	public int first(int type) {
+		checkType(type);
+		return heads[type];
+	}
+
+	/**
+	 * Returns the tile of the same type after a tile, -1 if it is the last one.
+	 *
+	 * @param tile the tile
+	 * @return the next tile of the same type
+	 */
+	public int next(int tile) {
+		return nexts[tile];
+	}
+
+	/**
+	 * Returns the number of tiles of a type.
+	 *
+	 * @param type the type
+	 * @return the number of tiles of the type
+	 */
+	public int count(int type) {
+		checkType(type);
+		return counts[type];
+	}
+
+	/**
+	 * Returns the cell of a tile.
+	 *
+	 * @param tile the tile
+	 * @return the cell of the tile, j * width + i
+	 */
+	public int getCell(int tile) {
+		return cells[tile];
+	}
+
+	/**
+	 * Returns the type of a tile.
+	 *
+	 * @param tile the tile
+	 * @return the type of the tile
+	 */
+	public int getType(int tile) {
+		return types[tile];
+	}
+
+	/**
+	 * Returns the coordinates of the tiles of a type, in the order of its chain.
+	 * The list is a view of the store which can not be modified, it is walked
+	 * along the chain and throws a ConcurrentModificationException if the store
+	 * changes during the walk.
+	 *
+	 * @param type the type
+	 * @return the coordinates of the tiles of the type
+	 */
+	public List<Coordinate> coordsOf(int type) {
+		checkType(type);
+		return new AbstractList<>() {
+			@Override
+			public int size() {
+				return counts[type];
+			}
+
+			@Override
+			public Coordinate get(int index) { // Walks the chain, the iterator is faster
+				Objects.checkIndex(index, counts[type]);
+				var tile = heads[type];
+				for (var x = 0; x < index; x++) {
+					tile = nexts[tile];
+				}
+				return new Coordinate(cells[tile] % width, cells[tile] / width);
+			}
+
+			@Override
+			public Iterator<Coordinate> iterator() {
+				return new Iterator<>() {
+					private final int expected = modcount;
+					private int tile = heads[type];
+
+					@Override
+					public boolean hasNext() {
+						return tile != NONE;
+					}
+
+					@Override
+					public Coordinate next() {
+						if (modcount != expected) {
+							throw new ConcurrentModificationException();
+						}
+						if (tile == NONE) {
+							throw new NoSuchElementException();
+						}
+						var coord = new Coordinate(cells[tile] % width, cells[tile] / width);
+						tile = nexts[tile];
+						return coord;
+					}
+				};
+			}
+		};
+	}
+}
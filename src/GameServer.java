@@ -0,0 +1,186 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameServer plays levels without display for the clients connected on a local
+ * socket. This class is characterized by the following information :
+ * <ul>
+ * <li>The socket where the clients connect, on the loopback address</li>
+ * <li>The directory of the levels the clients can load</li>
+ * <li>The levels already read, copied for each session</li>
+ * <li>The threads of the sessions</li>
+ * <li>The number of sessions opened and closed, and the times of the steps of
+ * the closed sessions</li>
+ * </ul>
+ * Each connection is a {@link GameSession}, run by its own thread : a virtual
+ * thread if the JVM has them, a platform thread otherwise. A session has its
+ * own LevelManager, nothing of a session is shared with the others, the levels
+ * read are only copied. The protocol is made of lines of ASCII text, a command
+ * by line and an answer by command :
+ * <ul>
+ * <li>LOAD level : play the level of the directory, answers OK lines cols</li>
+ * <li>STEP UP|DOWN|LEFT|RIGHT : play a turn, answers OK outcome hash</li>
+ * <li>STATE : answers OK hash followed by the state of the level</li>
+ * <li>QUIT : answers BYE and closes the connection</li>
+ * </ul>
+ * The hash is the Zobrist hash of the level in hexadecimal. A command which
+ * can not be done is answered by ERR and the reason.
+ */
+public class GameServer implements Closeable {
+	private final ServerSocket server;
+	private final Path directory;
+	private final ConcurrentHashMap<String, LevelManager> levels;
+	private final ExecutorService sessions;
+	private final AtomicLong opened;
+	private final AtomicLong closed;
+	private final LatencyHistogram steps; // Guarded by itself
+	private long reportnanos; // Guarded by steps
+	private long reportclosed;
+
+	/**
+	 * Create a new GameServer listening on a port of the loopback address.
+	 *
+	 * @param port      the port, 0 for any free port
+	 * @param directory the directory of the levels
+	 * @throws IOException if the directory does not exist or the port can not
+	 *                     be used
+	 */
+	public GameServer(int port, Path directory) throws IOException {
+		Objects.requireNonNull(directory);
+		if (!Files.isDirectory(directory)) {
+			throw new IOException(directory + " is not a directory");
+		}
+		this.directory = directory.toRealPath();
+		server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		levels = new ConcurrentHashMap<>();
+		sessions = newSessionExecutor();
+		opened = new AtomicLong();
+		closed = new AtomicLong();
+		steps = new LatencyHistogram();
+		reportnanos = System.nanoTime();
+	}
+
+	// One thread by session : a virtual thread when the JVM has them, which is
+	// only known at runtime, a new or reused platform thread otherwise
+	private static ExecutorService newSessionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Returns the port where the clients connect.
+	 *
+	 * @return the port of the server
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Accept the clients until the server is closed, each client is played by
+	 * its own session.
+	 *
+	 * @throws IOException if a client can not be accepted
+	 */
+	public void serve() throws IOException {
+		for (;;) {
+			try {
+				var socket = server.accept();
+				opened.incrementAndGet();
+				sessions.execute(new GameSession(this, socket));
+			} catch (SocketException e) {
+				if (server.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Returns a new copy of a level of the directory. The level is read the
+	 * first time, the next sessions copy it.
+	 *
+	 * @param name the name of the level file in the directory
+	 * @return a new copy of the level
+	 * @throws IOException if the name is not a file of the directory or if the
+	 *                     level can not be read
+	 */
+	public LevelManager newLevel(String name) throws IOException {
+		Objects.requireNonNull(name);
+		var path = directory.resolve(name).normalize();
+		if (!path.getParent().equals(directory) || !Files.isRegularFile(path)) {
+			throw new IOException(name + " is not a level");
+		}
+		try {
+			return levels.computeIfAbsent(path.toString(), file -> {
+				try {
+					var level = LevelParser.initialise(file);
+					level.updateAnddetectRule();
+					return level;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).copy();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Count the end of a session and keep the times of its steps.
+	 *
+	 * @param sessionsteps the times of the steps of the session, in nanoseconds
+	 */
+	void endSession(LatencyHistogram sessionsteps) {
+		synchronized (steps) {
+			steps.add(sessionsteps);
+		}
+		closed.incrementAndGet();
+	}
+
+	/**
+	 * Returns a line with the number of sessions closed by second since the last
+	 * report, the number of sessions open and the percentiles of the times of
+	 * the steps of all the closed sessions.
+	 *
+	 * @return the report of the server
+	 */
+	public String report() {
+		synchronized (steps) {
+			var now = System.nanoTime();
+			var nbclosed = closed.get();
+			var rate = (nbclosed - reportclosed) * 1e9 / Math.max(1, now - reportnanos);
+			reportnanos = now;
+			reportclosed = nbclosed;
+			return String.format("%.1f sessions/s, %d open, %d closed, %d steps, step p50 %.1f us p99 %.1f us"
+					+ " p99.9 %.1f us max %.1f us", rate, opened.get() - nbclosed, nbclosed, steps.getCount(),
+					steps.getValueAtPercentile(50) / 1000.0, steps.getValueAtPercentile(99) / 1000.0,
+					steps.getValueAtPercentile(99.9) / 1000.0, steps.getMax() / 1000.0);
+		}
+	}
+
+	/**
+	 * Stop to accept clients and interrupt the threads of the sessions. A session
+	 * waiting for its client ends when the client quits.
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+		sessions.shutdownNow();
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * GameSession plays the commands of one client of a {@link GameServer}. This
+ * class is characterized by the following information :
+ * <ul>
+ * <li>The server of the session</li>
+ * <li>The socket of the client</li>
+ * <li>The level played, null before the first LOAD</li>
+ * <li>The times of the steps played</li>
+ * </ul>
+ * A session is run by one thread and is the only one to use its level, so the
+ * level is not synchronized. The times of the steps are given to the server
+ * when the session ends.
+ */
+public class GameSession implements Runnable {
+	private final GameServer server;
+	private final Socket socket;
+	private final LatencyHistogram steps;
+	private LevelManager level;
+
+	/**
+	 * Create a new GameSession for a client.
+	 *
+	 * @param server the server of the session
+	 * @param socket the socket of the client
+	 */
+	public GameSession(GameServer server, Socket socket) {
+		this.server = Objects.requireNonNull(server);
+		this.socket = Objects.requireNonNull(socket);
+		steps = new LatencyHistogram();
+	}
+
+	/**
+	 * Answer the commands of the client until it quits or closes the connection.
+	 */
+	@Override
+	public void run() {
+		try (socket;
+				var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				var writer = new BufferedWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				var answer = answer(line.strip());
+				writer.write(answer);
+				writer.write('\n');
+				writer.flush();
+				if (answer.equals("BYE")) {
+					return;
+				}
+			}
+		} catch (IOException e) {
+			// The client is gone, the session ends
+		} finally {
+			server.endSession(steps);
+		}
+	}
+
+	// Returns the answer to a command
+	private String answer(String line) {
+		var space = line.indexOf(' ');
+		var command = space < 0 ? line : line.substring(0, space);
+		var argument = space < 0 ? "" : line.substring(space + 1).strip();
+		switch (command) {
+		case "LOAD":
+			try {
+				level = server.newLevel(argument);
+			} catch (IOException e) {
+				return "ERR " + e.getMessage();
+			}
+			return "OK " + level.getLines() + " " + level.getCols();
+		case "STEP":
+			if (level == null) {
+				return "ERR no level loaded";
+			}
+			var direction = directionOf(argument);
+			if (direction == null) {
+				return "ERR unknown direction " + argument;
+			}
+			var start = System.nanoTime();
+			var outcome = level.step(direction);
+			steps.record(System.nanoTime() - start);
+			return "OK " + outcome + " " + Long.toHexString(level.stateHash());
+		case "STATE":
+			if (level == null) {
+				return "ERR no level loaded";
+			}
+			var state = new StringBuilder("OK ").append(Long.toHexString(level.stateHash()));
+			for (var value : level.getState()) {
+				state.append(' ').append(value);
+			}
+			return state.toString();
+		case "QUIT":
+			return "BYE";
+		default:
+			return "ERR unknown command " + command;
+		}
+	}
+
+	// Returns the direction of its name, null if it is not a direction
+	private static Direction directionOf(String name) {
+		for (var direction : Direction.values()) {
+			if (direction.name().equals(name)) {
+				return direction;
+			}
+		}
+		return null;
+	}
+}
@@ -10,7 +10,7 @@ public interface GameView {
 	 * Draws the GUI of a game
 	 * 
 	 * @param graphics    the graphics is used for the game
-	 * @param leveldesign the bank of ImageIcon already loaded
+	 * @param leveldesign the images of the entities
 	 * @param data        is all the data of the game
 	 */
 	public void draw(Graphics2D graphics, LevelManager data, LevelDesign leveldesign);
@@ -21,7 +21,7 @@ public interface GameView {
 	 * @param context     the context application
 	 * @param data        is all the data of the game
 	 * @param view        the view of the game
-	 * @param leveldesign the bank of ImageIcon already loaded
+	 * @param leveldesign the images of the entities
 	 */
 	public static void draw(ApplicationContext context, LevelManager data, BabaGameView view, LevelDesign leveldesign) {
 
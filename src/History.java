@@ -0,0 +1,382 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * History keeps the changes of the last turns of a level, to undo and redo
+ * them. This class is characterized by the following information :
+ * <ul>
+ * <li>The turns which can be undone, from the oldest to the last one</li>
+ * <li>The turns which can be redone</li>
+ * <li>The turn being recorded</li>
+ * <li>The memory limit of the history, in bytes</li>
+ * </ul>
+ * A turn is a list of changes, each change is packed in a long : an added or
+ * removed coordinate of an entity, or the change of the properties of an
+ * entity. The entities are given by their index in the level. The list of
+ * rules before and after the turn is kept only if it has changed. When the
+ * memory limit is reached, the oldest turns are forgotten.
+ */
+public class History {
+	/**
+	 * The change adds a coordinate to an entity
+	 */
+	public static final int ADD = 0;
+	/**
+	 * The change removes a coordinate to an entity
+	 */
+	public static final int REMOVE = 1;
+	/**
+	 * The change sets the properties of an entity
+	 */
+	public static final int MASK = 2;
+
+	private static final int ENTITYBITS = 14;
+	private static final int VALUEBITS = 24;
+	private static final long VALUEMASK = (1L << VALUEBITS) - 1;
+	private static final long TURNSIZE = 64; // Memory of a turn without its changes
+
+	private final ArrayDeque<Turn> undos;
+	private final ArrayDeque<Turn> redos;
+	private Turn current;
+	private long[] buffer; // The changes of the turn being recorded, reused by the next turns
+	private long memorylimit;
+	private long memory;
+
+	/**
+	 * A turn of the level : its changes and its rules
+	 */
+	public static class Turn {
+		private long[] changes;
+		private int size;
+		private List<Rule> rulesbefore;
+		private List<Rule> rulesafter;
+		private int[] dirtylines;
+		private int[] dirtycols;
+
+		private Turn(long[] buffer) {
+			changes = buffer;
+		}
+
+		private void add(long change) {
+			if (size == changes.length) {
+				changes = Arrays.copyOf(changes, size * 2);
+			}
+			changes[size++] = change;
+		}
+
+		private long memory() {
+			var rules = rulesbefore == null ? 0 : (rulesbefore.size() + rulesafter.size()) * 8L;
+			var dirty = dirtylines == null ? 0 : (dirtylines.length + dirtycols.length) * 4L;
+			return TURNSIZE + size * 8L + rules + dirty;
+		}
+
+		/**
+		 * Returns the number of changes of the turn.
+		 * 
+		 * @return the number of changes of the turn
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Returns a change of the turn.
+		 * 
+		 * @param index the index of the change, from 0 to size() - 1
+		 * @return the change packed in a long
+		 */
+		public long get(int index) {
+			Objects.checkIndex(index, size);
+			return changes[index];
+		}
+
+		/**
+		 * Returns the rules before the turn, null if the rules have not changed.
+		 * 
+		 * @return the rules before the turn
+		 */
+		public List<Rule> getRulesBefore() {
+			return rulesbefore;
+		}
+
+		/**
+		 * Returns the rules after the turn, null if the rules have not changed.
+		 * 
+		 * @return the rules after the turn
+		 */
+		public List<Rule> getRulesAfter() {
+			return rulesafter;
+		}
+
+		/**
+		 * Returns the lines where a Text had changed before the turn, and whose rules
+		 * were detected during the turn. Null if there were none.
+		 * 
+		 * @return the lines to read again after undoing the turn
+		 */
+		public int[] getDirtyLines() {
+			return dirtylines;
+		}
+
+		/**
+		 * Returns the columns where a Text had changed before the turn, and whose
+		 * rules were detected during the turn. Null if there were none.
+		 * 
+		 * @return the columns to read again after undoing the turn
+		 */
+		public int[] getDirtyColumns() {
+			return dirtycols;
+		}
+	}
+
+	/**
+	 * Create a new empty History.
+	 * 
+	 * @param memorylimit the memory limit of the history, in bytes
+	 */
+	public History(long memorylimit) {
+		setMemoryLimit(memorylimit);
+		undos = new ArrayDeque<>();
+		redos = new ArrayDeque<>();
+		buffer = new long[16];
+	}
+
+	/**
+	 * Change the memory limit of the history, the oldest turns are forgotten if
+	 * the history is bigger.
+	 * 
+	 * @param memorylimit the memory limit of the history, in bytes
+	 */
+	public void setMemoryLimit(long memorylimit) {
+		if (memorylimit < 0) {
+			throw new IllegalArgumentException("negative memory limit " + memorylimit);
+		}
+		this.memorylimit = memorylimit;
+		shrink();
+	}
+
+	// Forget the oldest turns until the history is under the memory limit
+	private void shrink() {
+		while (memory > memorylimit && !undos.isEmpty()) {
+			memory -= undos.removeFirst().memory();
+		}
+		while (memory > memorylimit && !redos.isEmpty()) {
+			memory -= redos.removeLast().memory();
+		}
+	}
+
+	/**
+	 * Forget all the turns.
+	 */
+	public void clear() {
+		undos.clear();
+		redos.clear();
+		current = null;
+		memory = 0;
+	}
+
+	/**
+	 * Start to record a turn.
+	 * 
+	 * @param dirtylines the lines where a Text has changed since the last detection
+	 *                   of the rules
+	 * @param dirtycols  the columns where a Text has changed since the last
+	 *                   detection of the rules
+	 */
+	public void begin(BitSet dirtylines, BitSet dirtycols) {
+		current = new Turn(buffer);
+		if (!dirtylines.isEmpty() || !dirtycols.isEmpty()) {
+			current.dirtylines = toArray(dirtylines);
+			current.dirtycols = toArray(dirtycols);
+		}
+	}
+
+	// The bits of a BitSet in an array of their exact size, kept by the turn
+	private static int[] toArray(BitSet bits) {
+		var array = new int[bits.cardinality()];
+		var x = 0;
+		for (var bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+			array[x++] = bit;
+		}
+		return array;
+	}
+
+	/**
+	 * Returns true if a turn is being recorded.
+	 * 
+	 * @return true if a turn is being recorded
+	 */
+	public boolean isRecording() {
+		return current != null;
+	}
+
+	/**
+	 * Record a change of a coordinate.
+	 * 
+	 * @param type   ADD or REMOVE
+	 * @param entity the index of the entity in the level
+	 * @param coord  the coordinate added or removed
+	 */
+	public void record(int type, int entity, Coordinate coord) {
+		Objects.requireNonNull(coord);
+		record(type, entity, coord.i(), coord.j());
+	}
+
+	/**
+	 * Record a change of the cell i,j.
+	 * 
+	 * @param type   ADD or REMOVE
+	 * @param entity the index of the entity in the level
+	 * @param i      the column of the cell added or removed
+	 * @param j      the line of the cell added or removed
+	 */
+	public void record(int type, int entity, int i, int j) {
+		if (current != null) {
+			current.add(pack(type, entity, i, j));
+		}
+	}
+
+	/**
+	 * Record a change of the properties of an entity.
+	 * 
+	 * @param entity  the index of the entity in the level
+	 * @param oldmask the properties before the change
+	 * @param newmask the properties after the change
+	 */
+	public void recordMask(int entity, int oldmask, int newmask) {
+		if (current != null) {
+			current.add(pack(MASK, entity, oldmask, newmask));
+		}
+	}
+
+	/**
+	 * Record the change of the rules of the level.
+	 * 
+	 * @param before the rules before the change
+	 * @param after  the rules after the change
+	 */
+	public void recordRules(List<Rule> before, List<Rule> after) {
+		if (current != null && !before.equals(after)) {
+			if (current.rulesbefore == null) {
+				current.rulesbefore = List.copyOf(before);
+			}
+			current.rulesafter = List.copyOf(after);
+		}
+	}
+
+	/**
+	 * Stop to record the turn and keep it in the history. The turns undone are
+	 * forgotten.
+	 */
+	public void commit() {
+		if (current == null) {
+			return;
+		}
+		var turn = current;
+		current = null;
+		if (!redos.isEmpty()) {
+			for (var redo : redos) {
+				memory -= redo.memory();
+			}
+			redos.clear();
+		}
+		buffer = turn.changes;
+		turn.changes = Arrays.copyOf(buffer, turn.size);
+		undos.addLast(turn);
+		memory += turn.memory();
+		shrink();
+	}
+
+	/**
+	 * Returns the last turn and keeps it to be redone, null if there is no turn to
+	 * undo.
+	 * 
+	 * @return the last turn, null if there is no turn to undo
+	 */
+	public Turn undo() {
+		var turn = undos.pollLast();
+		if (turn != null) {
+			redos.addFirst(turn);
+		}
+		return turn;
+	}
+
+	/**
+	 * Returns the last turn undone and keeps it to be undone again, null if there
+	 * is no turn to redo.
+	 * 
+	 * @return the last turn undone, null if there is no turn to redo
+	 */
+	public Turn redo() {
+		var turn = redos.pollFirst();
+		if (turn != null) {
+			undos.addLast(turn);
+		}
+		return turn;
+	}
+
+	/**
+	 * Returns the memory used by the history, in bytes.
+	 * 
+	 * @return the memory used by the history
+	 */
+	public long getMemory() {
+		return memory;
+	}
+
+	// Pack a change in a long : type, entity, value1, value2
+	private static long pack(int type, int entity, int value1, int value2) {
+		if (entity < 0 || entity >= 1 << ENTITYBITS) {
+			throw new IllegalArgumentException("entity index out of range " + entity);
+		}
+		if ((value1 & ~VALUEMASK) != 0 || (value2 & ~VALUEMASK) != 0) {
+			throw new IllegalArgumentException("value out of range " + value1 + " " + value2);
+		}
+		return (long) type << 62 | (long) entity << 48 | (value1 & VALUEMASK) << VALUEBITS | (value2 & VALUEMASK);
+	}
+
+	/**
+	 * Returns the type of a change : ADD, REMOVE or MASK.
+	 * 
+	 * @param change the change packed in a long
+	 * @return the type of the change
+	 */
+	public static int typeOf(long change) {
+		return (int) (change >>> 62);
+	}
+
+	/**
+	 * Returns the index of the entity of a change.
+	 * 
+	 * @param change the change packed in a long
+	 * @return the index of the entity in the level
+	 */
+	public static int entityOf(long change) {
+		return (int) (change >>> 48) & ((1 << ENTITYBITS) - 1);
+	}
+
+	/**
+	 * Returns the first value of a change : the column of the coordinate, or the
+	 * properties before the change.
+	 * 
+	 * @param change the change packed in a long
+	 * @return the first value of the change
+	 */
+	public static int firstOf(long change) {
+		return (int) (change >>> VALUEBITS & VALUEMASK);
+	}
+
+	/**
+	 * Returns the second value of a change : the line of the coordinate, or the
+	 * properties after the change.
+	 * 
+	 * @param change the change packed in a long
+	 * @return the second value of the change
+	 */
+	public static int secondOf(long change) {
+		return (int) (change & VALUEMASK);
+	}
+}
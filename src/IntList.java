@@ -0,0 +1,74 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * IntList is a list of ints kept in an array, without boxing. The array grows
+ * by doubling and is kept when the list is cleared, so a list reused from one
+ * turn to the other does not allocate anything once it is big enough.
+ */
+public class IntList {
+	private int[] values;
+	private int size;
+
+	/**
+	 * Create a new empty IntList.
+	 */
+	public IntList() {
+		values = new int[16];
+	}
+
+	/**
+	 * Add a value at the end of the list.
+	 *
+	 * @param value the value to add
+	 */
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Returns a value of the list.
+	 *
+	 * @param index the index of the value, from 0 to size() - 1
+	 * @return the value at this index
+	 */
+	public int get(int index) {
+		Objects.checkIndex(index, size);
+		return values[index];
+	}
+
+	/**
+	 * Returns the number of values of the list.
+	 *
+	 * @return the number of values of the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the list has no value.
+	 *
+	 * @return true if the list has no value
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all the values, the array is kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Sort the values in ascending order.
+	 */
+	public void sort() {
+		Arrays.sort(values, 0, size);
+	}
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * LatencyHistogram counts durations in buckets of logarithmic size, as a HDR
+ * histogram does. This class is characterized by the following information :
+ * <ul>
+ * <li>The number of values recorded in each bucket</li>
+ * <li>The number, the sum, the minimum and the maximum of the values</li>
+ * </ul>
+ * The values below 32 have a bucket each, then each power of two is cut in 16
+ * buckets, so a percentile is known with a precision of about 6%, whatever the
+ * value. A record only increments a few longs and allocates nothing. Each
+ * method holds the lock of the histogram, so a thread which reads or resets
+ * the histogram while another one records in it never sees the number of
+ * values out of step with the buckets.
+ */
+public class LatencyHistogram {
+	private static final int SUBBITS = 4;
+	private static final int SUBCOUNT = 1 << SUBBITS; // Number of buckets of a power of two
+	private static final int BUCKETS = (Long.SIZE - 1 - SUBBITS + 1) * SUBCOUNT;
+
+	private final long[] counts;
+	private long count;
+	private long sum;
+	private long min;
+	private long max;
+
+	/**
+	 * Create a new empty LatencyHistogram.
+	 */
+	public LatencyHistogram() {
+		counts = new long[BUCKETS];
+		min = Long.MAX_VALUE;
+	}
+
+	// The bucket of a value which is not negative
+	private static int bucketOf(long value) {
+		if (value < 2 * SUBCOUNT) {
+			return (int) value;
+		}
+		var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUBBITS;
+		return (shift + 1) * SUBCOUNT + (int) (value >>> shift) - SUBCOUNT;
+	}
+
+	// The greatest value of a bucket
+	private static long highestOf(int bucket) {
+		if (bucket < 2 * SUBCOUNT) {
+			return bucket;
+		}
+		var shift = bucket / SUBCOUNT - 1;
+		var sub = bucket % SUBCOUNT + SUBCOUNT;
+		return ((sub + 1L) << shift) - 1;
+	}
+
+	/**
+	 * Record a value, a negative value is recorded as 0.
+	 *
+	 * @param value the value, usually a duration in nanoseconds
+	 */
+	public synchronized void record(long value) {
+		value = Math.max(value, 0);
+		counts[bucketOf(value)]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 *
+	 * @return the number of values recorded
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value recorded.
+	 *
+	 * @return the smallest value recorded, 0 if there is none
+	 */
+	public synchronized long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * Returns the greatest value recorded.
+	 *
+	 * @return the greatest value recorded, 0 if there is none
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the mean of the values recorded.
+	 *
+	 * @return the mean of the values, 0 if there is none
+	 */
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Returns the value below which a percentage of the values are. The value is
+	 * the greatest one of its bucket, but never more than the maximum.
+	 *
+	 * @param percentile the percentage, between 0 and 100
+	 * @return the value at this percentile, 0 if there is no value
+	 */
+	public synchronized long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100 " + percentile);
+		}
+		if (count == 0) {
+			return 0;
+		}
+		var rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		var seen = 0L;
+		for (var bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(highestOf(bucket), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Add all the values of another histogram to this one. The other histogram
+	 * is copied under its own lock, then added under the lock of this one, the
+	 * two locks are never held together.
+	 *
+	 * @param other the histogram whose values are added
+	 */
+	public void add(LatencyHistogram other) {
+		Objects.requireNonNull(other);
+		long[] othercounts;
+		long othercount;
+		long othersum;
+		long othermin;
+		long othermax;
+		synchronized (other) {
+			othercounts = other.counts.clone();
+			othercount = other.count;
+			othersum = other.sum;
+			othermin = other.min;
+			othermax = other.max;
+		}
+		synchronized (this) {
+			for (var bucket = 0; bucket < BUCKETS; bucket++) {
+				counts[bucket] += othercounts[bucket];
+			}
+			count += othercount;
+			sum += othersum;
+			min = Math.min(min, othermin);
+			max = Math.max(max, othermax);
+		}
+	}
+
+	/**
+	 * Forget all the values recorded.
+	 */
+	public synchronized void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+}
@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * LevelCompiler translates a level from the text format to a binary format, and
+ * loads the binary format. The binary format is :
+ * <ul>
+ * <li>A header : the magic number, the version, the number of lines, the number
+ * of columns and the number of entities, as ints</li>
+ * <li>A table of the entities, 8 bytes each : the kind (element or text), the
+ * code of the noun or the word, 2 bytes unused and the number of
+ * coordinates</li>
+ * <li>For each entity of the table, its coordinates packed in ints, j * (cols +
+ * 1) + i</li>
+ * </ul>
+ * The entities and their coordinates are kept in the order of the LevelManager.
+ * The entities of a cell are loaded in the order of the table, which is not
+ * the order they were read in the text file, but the Board keeps a cell in the
+ * order of the level whatever the order of the loading, so a compiled level
+ * plays as its text file. The binary file is mapped in memory to be loaded,
+ * without reading it line by line : the store of the level is sized once from
+ * the total of the table, and the cells of each entity are added at once with
+ * {@link LevelManager#addCells(int, int[], int, int)}, without a Coordinate by
+ * tile.
+ */
+public class LevelCompiler {
+	/**
+	 * The extension of the binary level files
+	 */
+	public static final String EXTENSION = ".babl";
+
+	private static final int MAGIC = 0x4241424C; // "BABL"
+	private static final int VERSION = 1;
+	private static final int HEADERSIZE = 5 * 4;
+	private static final int ENTRYSIZE = 8;
+	private static final byte ELEMENT = 0;
+	private static final byte TEXT = 1;
+
+	private LevelCompiler() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Compile a level written in the text format to the binary format.
+	 *
+	 * @param source the file of the level, in the text format
+	 * @param target the file of the binary level, replaced if it exists
+	 * @throws IOException throw a IOException if the source is not correctly
+	 *                     written or if the target can not be written
+	 */
+	public static void compile(String source, Path target) throws IOException {
+		compile(LevelParser.initialise(source), target);
+	}
+
+	/**
+	 * Write a level in the binary format. The rules of the level are not written,
+	 * the level has to be in its first state.
+	 *
+	 * @param level  the level to write
+	 * @param target the file of the binary level, replaced if it exists
+	 * @throws IOException throw a IOException if the target can not be written
+	 */
+	public static void compile(LevelManager level, Path target) throws IOException {
+		Objects.requireNonNull(level);
+		Objects.requireNonNull(target);
+		var entities = level.getData();
+		var size = (long) HEADERSIZE + (long) ENTRYSIZE * entities.size();
+		for (var entity : entities) {
+			size += 4L * entity.getCoords().size();
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(target + ": level too big");
+		}
+		var buffer = ByteBuffer.allocate((int) size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(level.getLines()).putInt(level.getCols())
+				.putInt(entities.size());
+		for (var entity : entities) {
+			if (entity instanceof Text) {
+				buffer.put(TEXT).put((byte) Rule.codeOf(((Text) entity).getWord()));
+			} else {
+				buffer.put(ELEMENT).put((byte) ((BabaElement) entity).getElement().ordinal());
+			}
+			buffer.putShort((short) 0).putInt(entity.getCoords().size());
+		}
+		var width = level.getCols() + 1;
+		for (var entity : entities) {
+			for (var coord : entity.getCoords()) {
+				buffer.putInt(coord.j() * width + coord.i());
+			}
+		}
+		buffer.flip();
+		try (var channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Create the level of a binary file, without loading any image. The rules of
+	 * the level are not detected yet, {@link LevelManager#updateAnddetectRule()}
+	 * has to be called before the first move.
+	 *
+	 * @param filename the binary file to read
+	 * @return a new LevelManager
+	 * @throws IOException throw a IOException if the file is not a correct binary
+	 *                     level
+	 */
+	public static LevelManager load(String filename) throws IOException {
+		try (var channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			var filesize = channel.size();
+			if (filesize < HEADERSIZE || filesize > Integer.MAX_VALUE) {
+				throw new IOException(filename + ": not a binary level");
+			}
+			var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, filesize);
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(filename + ": not a binary level");
+			}
+			var version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(filename + ": unknown version " + version);
+			}
+			var lines = buffer.getInt();
+			var cols = buffer.getInt();
+			var nbentities = buffer.getInt();
+			if (lines < 0 || cols < 0 || (lines + 1L) * (cols + 1L) > Integer.MAX_VALUE || nbentities < 0
+					|| nbentities > (filesize - HEADERSIZE) / ENTRYSIZE) {
+				throw new IOException(filename + ": wrong header");
+			}
+			var level = new LevelManager(lines, cols);
+			var entities = new BabaEntity[nbentities];
+			var counts = new int[nbentities];
+			var total = 0L;
+			for (var x = 0; x < nbentities; x++) {
+				var kind = buffer.get();
+				var code = buffer.get() & 0xFF;
+				buffer.getShort();
+				counts[x] = buffer.getInt();
+				if (counts[x] < 0) {
+					throw new IOException(filename + ": wrong number of coordinates");
+				}
+				entities[x] = entityOf(kind, code, filename);
+				level.addEntity(entities[x]);
+				total += counts[x];
+			}
+			if (total * 4 != buffer.remaining()) {
+				throw new IOException(filename + ": wrong number of coordinates");
+			}
+			level.reserveTiles((int) total);
+			var cellcount = (cols + 1) * (lines + 1);
+			var cells = new int[0];
+			for (var x = 0; x < nbentities; x++) { // The cells of each entity are added at once
+				if (cells.length < counts[x]) {
+					cells = new int[counts[x]];
+				}
+				buffer.asIntBuffer().get(cells, 0, counts[x]);
+				buffer.position(buffer.position() + 4 * counts[x]);
+				for (var n = 0; n < counts[x]; n++) {
+					if (cells[n] < 0 || cells[n] >= cellcount) {
+						throw new IOException(filename + ": cell " + cells[n] + " is outside the board");
+					}
+				}
+				level.addCells(level.typeOf(entities[x]), cells, 0, counts[x]);
+			}
+			return level;
+		}
+	}
+
+	// The entity of an entry of the table
+	private static BabaEntity entityOf(byte kind, int code, String filename) throws IOException {
+		try {
+			if (kind == ELEMENT) {
+				return new BabaElement(NounImgEnum.values()[code]);
+			} else if (kind == TEXT) {
+				return new Text(Rule.wordOf(code));
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException(filename + ": unknown entity code " + code, e);
+		}
+		throw new IOException(filename + ": unknown entity kind " + kind);
+	}
+}
@@ -1,43 +1,174 @@
-import java.util.HashMap;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DirectColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Objects;
 
-import javax.swing.ImageIcon;
+import javax.imageio.ImageIO;
 
 /**
- * LevelDesign stock for each element its imageicon. This class is characterized
- * by the following information :
+ * LevelDesign stores the images of all the entities in one atlas. This class is
+ * characterized by the following information :
  * <ul>
- * <li>A bank of imageicon called dataImage</li>
+ * <li>The atlas of the images, as read from the files</li>
+ * <li>A copy of the atlas scaled to the size of a square</li>
+ * <li>The size of a square of the scaled copy</li>
  * </ul>
+ * The images are read once, when LevelDesign is created, for all the elements
+ * and all the words, so one LevelDesign is shared by all the levels. Each image
+ * has a number, given by {@link #spriteOf(BabaEntity)}, which gives its place
+ * in the atlas. Drawing an entity copies its square of the scaled atlas, the
+ * image is not scaled again at each draw.
  */
 public class LevelDesign {
-	private final HashMap<BabaEntity, ImageIcon> dataImage;
+	private static final int COLUMNS = 8; // Number of images on a line of the atlas
+	private static final int ELEMENTS = 0; // Number of the first image of each kind
+	private static final int NOUNS = ELEMENTS + NounImgEnum.values().length;
+	private static final int OPERATORS = NOUNS + NounTextEnum.values().length;
+	private static final int PROPERTIES = OPERATORS + OperatorEnum.values().length;
+	private static final int SPRITES = PROPERTIES + PropertyEnum.values().length;
+	// The pixels of the images are opaque or transparent, never translucent : a
+	// bitmask alpha is copied without blending
+	private static final DirectColorModel BITMASK = new DirectColorModel(25, 0xFF0000, 0xFF00, 0xFF, 0x1000000);
+
+	private final BufferedImage atlas;
+	private final int spritesize;
+	private BufferedImage scaled;
+	private int squaresize;
 
 	/**
-	 * Create a new LevelDesign : a new bank of imageIcon
+	 * Create a new LevelDesign : read the images of all the elements and all the
+	 * words.
+	 *
+	 * @throws UncheckedIOException if an image can not be read
 	 */
 	public LevelDesign() {
-		dataImage = new HashMap<>();
+		var images = new BufferedImage[SPRITES];
+		var size = 1;
+		for (var element : NounImgEnum.values()) {
+			images[ELEMENTS + element.ordinal()] = read(element.getFileImg());
+		}
+		for (var noun : NounTextEnum.values()) {
+			images[NOUNS + noun.ordinal()] = read(noun.getFileImg());
+		}
+		for (var operator : OperatorEnum.values()) {
+			images[OPERATORS + operator.ordinal()] = read(operator.getFileImg());
+		}
+		for (var property : PropertyEnum.values()) {
+			images[PROPERTIES + property.ordinal()] = read(property.getFileImg());
+		}
+		for (var image : images) {
+			size = Math.max(size, Math.max(image.getWidth(), image.getHeight()));
+		}
+		spritesize = size;
+		atlas = pack(images, size);
+	}
+
+	// Read an image file
+	private static BufferedImage read(String filename) {
+		try {
+			var image = ImageIO.read(new File(filename));
+			if (image == null) {
+				throw new IOException(filename + ": not an image");
+			}
+			return image;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Draw the images in an atlas, each one in a square of size pixels
+	private static BufferedImage pack(BufferedImage[] images, int size) {
+		var lines = (images.length + COLUMNS - 1) / COLUMNS;
+		var image = new BufferedImage(COLUMNS * size, lines * size, BufferedImage.TYPE_INT_ARGB);
+		var graphics = image.createGraphics();
+		try {
+			for (var sprite = 0; sprite < images.length; sprite++) {
+				graphics.drawImage(images[sprite], sprite % COLUMNS * size, sprite / COLUMNS * size, size, size,
+						null);
+			}
+		} finally {
+			graphics.dispose();
+		}
+		return image;
 	}
 
 	/**
-	 * Add an entity and its imageicon.
-	 * 
-	 * @param entity the entity to add to the bank of image
+	 * Returns the number of the image of an entity.
+	 *
+	 * @param entity the entity
+	 * @return the number of the image of the entity
 	 */
-	public void add(BabaEntity entity) {
+	public static int spriteOf(BabaEntity entity) {
 		Objects.requireNonNull(entity);
-		if (!dataImage.containsKey(entity)) {
-			dataImage.put(entity, new ImageIcon(entity.getFileImg()));
+		if (entity instanceof BabaElement) {
+			return ELEMENTS + ((BabaElement) entity).getElement().ordinal();
 		}
+		var word = ((Text) entity).getWord();
+		if (word instanceof NounTextEnum) {
+			return NOUNS + ((NounTextEnum) word).ordinal();
+		} else if (word instanceof OperatorEnum) {
+			return OPERATORS + ((OperatorEnum) word).ordinal();
+		}
+		return PROPERTIES + ((PropertyEnum) word).ordinal();
+	}
+
+	/**
+	 * Scale the atlas to the size of a square. Nothing is done if the atlas is
+	 * already at this size.
+	 *
+	 * @param squaresize the size of a square, in pixels
+	 */
+	public void scale(int squaresize) {
+		if (squaresize <= 0) {
+			throw new IllegalArgumentException("squaresize must be positive " + squaresize);
+		}
+		if (scaled != null && this.squaresize == squaresize) {
+			return;
+		}
+		var lines = (SPRITES + COLUMNS - 1) / COLUMNS;
+		scaled = new BufferedImage(BITMASK, BITMASK.createCompatibleWritableRaster(COLUMNS * squaresize,
+				lines * squaresize), false, null);
+		var graphics = scaled.createGraphics();
+		try {
+			for (var sprite = 0; sprite < SPRITES; sprite++) { // Each square is scaled on its own
+				var sx = sprite % COLUMNS * spritesize;
+				var sy = sprite / COLUMNS * spritesize;
+				var dx = sprite % COLUMNS * squaresize;
+				var dy = sprite / COLUMNS * squaresize;
+				graphics.drawImage(atlas, dx, dy, dx + squaresize, dy + squaresize, sx, sy, sx + spritesize,
+						sy + spritesize, null);
+			}
+		} finally {
+			graphics.dispose();
+		}
+		this.squaresize = squaresize;
+	}
+
+	/**
+	 * Draw an image of the scaled atlas, {@link #scale(int)} has to be called
+	 * before.
+	 *
+	 * @param graphics the graphics where the image is drawn
+	 * @param sprite   the number of the image
+	 * @param x        the x of the top left corner of the square
+	 * @param y        the y of the top left corner of the square
+	 */
+	public void draw(Graphics2D graphics, int sprite, int x, int y) {
+		var sx = sprite % COLUMNS * squaresize;
+		var sy = sprite / COLUMNS * squaresize;
+		graphics.drawImage(scaled, x, y, x + squaresize, y + squaresize, sx, sy, sx + squaresize, sy + squaresize,
+				null);
 	}
 
 	/**
-	 * Returns the bank of image
-	 * 
-	 * @return the bank of image
+	 * Returns the size of a square of the scaled atlas, 0 if it is not scaled.
+	 *
+	 * @return the size of a square of the scaled atlas
 	 */
-	public HashMap<BabaEntity, ImageIcon> getDataImage() {
-		return dataImage;
+	public int getSquareSize() {
+		return squaresize;
 	}
 }
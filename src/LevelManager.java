@@ -1,8 +1,8 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import fr.umlv.zen5.KeyboardKey;
 
 /**
  * LevelManager manages the level of the game. This class is characterized by
@@ -10,15 +10,58 @@ import fr.umlv.zen5.KeyboardKey;
  * <ul>
  * <li>The number of lines of the board</li>
  * <li>The number of columns of the board</li>
- * <li>A list of all the entity</li>
+ * <li>A list of all the entity, and the lists of its Text and of its
+ * BabaElement</li>
+ * <li>An EntityStore, which keeps the coordinates of the entities</li>
+ * <li>A Board, which indexes the entities by cell</li>
  * <li>A RuleManager of the board</li>
+ * <li>The lines and columns where a Text has changed since the last detection
+ * of the rules</li>
+ * <li>The buffers of the detection of the rules : the rules and the properties
+ * of the elements before the detection, and the cells changed by a NOUN IS
+ * NOUN rule</li>
+ * <li>The buffers of the chain of entities pushed by a move</li>
+ * <li>The History of the last turns, to undo and redo them</li>
+ * <li>The Zobrist hash of the entities on the cells and of the rules</li>
+ * <li>The cells which have changed since they were last drawn</li>
+ * <li>The cells to check at the end of the turn : the cells which have changed
+ * since the last check, and the cells where an effect was still active</li>
+ * <li>The TurnMetrics which measures the turns, if there is one</li>
  * </ul>
+ * LevelManager does not depend on the graphics, a level can be played without
+ * display with {@link #step(Direction)}.
  */
 public class LevelManager {
+	private static final long HISTORYLIMIT = 16 * 1024 * 1024; // Default memory limit of the history
 	private final int lines;
 	private final int cols;
 	private List<BabaEntity> entities;
+	private final List<Text> texts;
+	private final List<BabaElement> elements;
+	private final EntityStore store;
+	private final Board board;
 	private final RuleManager rulemanager;
+	private final BitSet dirtylines;
+	private final BitSet dirtycols;
+	private final List<Rule> oldrules;
+	private int[] oldmasks;
+	private final IntList nouncells;
+	private BabaEntity[] chainentities;
+	private long[] chaincounts;
+	private int[] chainends;
+	private final History history;
+	private long cellhash;
+	private long rulehash;
+	private final BitSet changedcells;
+	private final IntList youcells;
+	private final IntList buffer; // Reused by the checks of the end of the turn
+	private IntList pendingcells; // A cell can be there more than once
+	private IntList checkedcells; // The cells checked by the current turn
+	private boolean checkall; // True until the first check, the cells are not pending before
+	private boolean checking; // The cells changed by the checks are checked at once, not pending
+	private TurnMetrics metrics;
+	private int tilesmoved; // Counted for the metrics of the turn
+	private int ruleschanged;
 
 	/**
 	 * Create a new LevelManager.
@@ -30,7 +73,26 @@ public class LevelManager {
 		this.lines = lines;
 		this.cols = cols;
 		entities = new ArrayList<>();
+		texts = new ArrayList<>();
+		elements = new ArrayList<>();
+		store = new EntityStore(cols + 1, lines + 1);
+		board = new Board(cols + 1, lines + 1);
 		rulemanager = new RuleManager();
+		dirtylines = new BitSet(lines + 1);
+		dirtycols = new BitSet(cols + 1);
+		oldrules = new ArrayList<>();
+		oldmasks = new int[16];
+		nouncells = new IntList();
+		chainentities = new BabaEntity[16];
+		chaincounts = new long[16];
+		chainends = new int[16];
+		history = new History(HISTORYLIMIT);
+		changedcells = new BitSet(); // It grows with the cells changed, a large board can be mostly empty
+		youcells = new IntList();
+		buffer = new IntList();
+		pendingcells = new IntList();
+		checkedcells = new IntList();
+		checkall = true;
 	}
 
 	/**
@@ -43,11 +105,61 @@ public class LevelManager {
 		Objects.requireNonNull(entity);
 		Objects.requireNonNull(coord);
 		this.addEntity(entity);
-		for (var elem : entities) {
-			if (elem.equals(entity)) {
-				elem.addCoord(coord);
+		addTile(typeOf(entity), board.cellOf(coord.i(), coord.j()));
+	}
+
+	// Add a tile of the type on the cell
+	private void addTile(int type, int cell) {
+		if (entities.get(type) instanceof Text && store.find(type, cell) >= 0) {
+			return; // A Text is only once on a coordinate
+		}
+		store.add(type, cell);
+		added(cell, type);
+	}
+
+	/**
+	 * Returns the index of an entity in the level, which is its type in the
+	 * EntityStore. The entities of the level are all different, the entity can be
+	 * another instance equal to the one of the level.
+	 * 
+	 * @param entity the entity to search
+	 * @return the index of the entity in the level, -1 if it is not in the level
+	 */
+	public int typeOf(BabaEntity entity) {
+		for (var x = 0; x < entities.size(); x++) {
+			if (entities.get(x).equals(entity)) {
+				return x;
 			}
 		}
+		return -1;
+	}
+
+	// Update the board, the hash and the history after a cell is added to an
+	// entity
+	private void added(int cell, int type) {
+		var elem = entities.get(type);
+		board.add(cell, elem);
+		changedcells.set(cell);
+		pending(cell);
+		cellhash ^= keyOf(cell, elem);
+		markIfText(cell, elem);
+		if (history.isRecording()) {
+			history.record(History.ADD, type, board.iOf(cell), board.jOf(cell));
+		}
+	}
+
+	// Update the board, the hash and the history before a cell is removed to an
+	// entity
+	private void removing(int cell, int type) {
+		var elem = entities.get(type);
+		cellhash ^= keyOf(cell, elem);
+		board.remove(cell, elem);
+		changedcells.set(cell);
+		pending(cell);
+		markIfText(cell, elem);
+		if (history.isRecording()) {
+			history.record(History.REMOVE, type, board.iOf(cell), board.jOf(cell));
+		}
 	}
 
 	/**
@@ -58,10 +170,47 @@ public class LevelManager {
 	public void addEntity(BabaEntity entity) {
 		Objects.requireNonNull(entity);
 		if (!entities.contains(entity)) {
+			entity.attach(store, store.addType());
 			entities.add(entity);
+			if (entity instanceof Text) {
+				texts.add((Text) entity);
+			} else {
+				elements.add((BabaElement) entity);
+			}
+		}
+	}
+
+	/**
+	 * Add cells to an entity of the level, given by its type. It is the bulk path
+	 * of the loaders : the type is resolved once with {@link #typeOf(BabaEntity)}
+	 * and the cells are added without allocating a Coordinate or searching the
+	 * entity for each of them.
+	 * 
+	 * @param type   the index of the entity in the level
+	 * @param cells  the cells packed in ints, j * (cols + 1) + i
+	 * @param offset the index of the first cell to add in the array
+	 * @param length the number of cells to add
+	 */
+	public void addCells(int type, int[] cells, int offset, int length) {
+		Objects.requireNonNull(cells);
+		Objects.checkIndex(type, entities.size());
+		Objects.checkFromIndexSize(offset, length, cells.length);
+		for (var x = offset; x < offset + length; x++) {
+			addTile(type, cells[x]);
 		}
 	}
 
+	/**
+	 * Make room for a number of tiles, so that the level does not grow while the
+	 * tiles are added. The loaders call it when they know the number of tiles of
+	 * the level.
+	 * 
+	 * @param tiles the number of tiles which will be added
+	 */
+	public void reserveTiles(int tiles) {
+		store.reserve(tiles);
+	}
+
 	/**
 	 * Add a list of coordinate to an entity
 	 * 
@@ -97,8 +246,83 @@ public class LevelManager {
 	public void remove(Coordinate coord, BabaEntity entity) {
 		Objects.requireNonNull(entity);
 		Objects.requireNonNull(coord);
-		if (entities.contains(entity)) {
-			entity.removeCoord(coord);
+		var type = typeOf(entity);
+		if (type >= 0 && board.isInside(coord)) {
+			removeTile(type, board.cellOf(coord.i(), coord.j()));
+		}
+	}
+
+	// Remove a tile of the type from the cell, if there is one
+	private void removeTile(int type, int cell) {
+		var tile = store.find(type, cell);
+		if (tile >= 0) {
+			removeTile(tile);
+		}
+	}
+
+	// Remove a tile of the store
+	private void removeTile(int tile) {
+		removing(store.getCell(tile), store.getType(tile));
+		store.remove(tile);
+	}
+
+	// Move one time an entity from a cell to another one. The tile of the entity is
+	// moved in place, it is recorded in the history as an add and a remove
+	private void relocate(int cell, int newcell, int type) {
+		var tile = store.find(type, cell);
+		if (tile < 0) {
+			return;
+		}
+		if (entities.get(type) instanceof Text && store.find(type, newcell) >= 0) {
+			removeTile(tile); // A Text is only once on a coordinate
+			return;
+		}
+		removing(cell, type);
+		store.move(tile, newcell);
+		added(newcell, type);
+		tilesmoved++;
+	}
+
+	// The Zobrist key of the last occurrence of the entity on the cell
+	private long keyOf(int cell, BabaEntity entity) {
+		return Zobrist.cellKey(Zobrist.typeOf(entity), cell, board.count(cell, entity));
+	}
+
+	// Compute again the hash of the rules, a rule written twice is hashed once
+	private void hashRules() {
+		var rules = rulemanager.getRulemanager();
+		var codes = new int[rules.size()];
+		for (var x = 0; x < codes.length; x++) {
+			codes[x] = rules.get(x).toCode();
+		}
+		Arrays.sort(codes);
+		rulehash = 0;
+		for (var x = 0; x < codes.length; x++) {
+			if (x == 0 || codes[x] != codes[x - 1]) {
+				rulehash ^= Zobrist.ruleKey(codes[x]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the Zobrist hash of the state of the level : the entities on each
+	 * cell, counted with their multiplicity, and the active rules. It is updated
+	 * at each change, so it costs nothing to get. Two levels in the same state have
+	 * the same hash, two levels with the same hash are very likely in the same
+	 * state.
+	 * 
+	 * @return the hash of the state of the level
+	 */
+	public long stateHash() {
+		return cellhash ^ rulehash;
+	}
+
+	// If the entity is a Text, its line and its column have to be read again to
+	// detect the rules
+	private void markIfText(int cell, BabaEntity entity) {
+		if (entity instanceof Text) {
+			dirtylines.set(board.jOf(cell));
+			dirtycols.set(board.iOf(cell));
 		}
 	}
 
@@ -115,6 +339,15 @@ public class LevelManager {
 		}
 	}
 
+	/**
+	 * Returns the rules active on the level.
+	 * 
+	 * @return the rules active on the level
+	 */
+	public List<Rule> getRules() {
+		return List.copyOf(rulemanager.getRulemanager());
+	}
+
 	/**
 	 * Returns the list of Entity of the level.
 	 * 
@@ -124,169 +357,563 @@ public class LevelManager {
 		return entities;
 	}
 
+	/**
+	 * Play a turn : move all the YOU's Entities of the level and returns the
+	 * outcome of the turn.
+	 * 
+	 * @param direction the moving direction
+	 * @return WIN if a YOU's entity is on a Win element, LOSE if there is no YOU's
+	 *         entity left, CONTINUE otherwise
+	 */
+	public TurnOutcome step(Direction direction) {
+		return play(direction);
+	}
+
+	/**
+	 * Returns true if there is no YOU's entity left on the board.
+	 * 
+	 * @return true if there is no YOU's entity left on the board
+	 */
+	public boolean isLost() {
+		for (var type = 0; type < entities.size(); type++) {
+			if (entities.get(type).hasRule(PropertyEnum.YOU) && store.count(type) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Move all the YOU's Entities of the level
 	 * 
-	 * @param keyboard the moving direction
+	 * @param direction the moving direction
 	 * @return true if a YOU's entity is on a Win element. False otherwise
 	 */
-	public boolean move(KeyboardKey keyboard) {
-		Objects.requireNonNull(keyboard);
-		var youentitys = ElemWithThisRule(PropertyEnum.YOU);
-		for (var entity : youentitys) { // For all YOU's element
-			var lstcoordsofyou = List.copyOf(entity.getCoords());
-			var mapcoordsofyou = lstcoordsofyou.stream() // Map of the coord and the number of times the coordinate
-															// appears
-					.collect(Collectors.groupingBy(coord -> coord, Collectors.counting()));
-			for (var coord : mapcoordsofyou.keySet()) {
-				keyboardToMove(keyboard, coord, entity, mapcoordsofyou.get(coord));
+	public boolean move(Direction direction) {
+		return play(direction) == TurnOutcome.WIN;
+	}
+
+	// Play a turn and returns its outcome
+	private TurnOutcome play(Direction direction) {
+		Objects.requireNonNull(direction);
+		if (metrics != null) {
+			metrics.beginTurn();
+			tilesmoved = 0;
+			ruleschanged = 0;
+		}
+		history.begin(dirtylines, dirtycols);
+		var di = direction.getDi();
+		var dj = direction.getDj();
+		for (var type = 0; type < entities.size(); type++) { // For all YOU's element
+			if (!entities.get(type).hasRule(PropertyEnum.YOU)) {
+				continue;
+			}
+			// The cells of the element, sorted, a cell appears as many times as the
+			// element is on it
+			youcells.clear();
+			for (var tile = store.first(type); tile >= 0; tile = store.next(tile)) {
+				youcells.add(store.getCell(tile));
 			}
+			youcells.sort();
+			// The cells at the front of the move are moved first, so the cells behind
+			// them can follow
+			var forward = di + dj > 0;
+			for (var x = 0; x < youcells.size();) {
+				var cell = youcells.get(forward ? youcells.size() - 1 - x : x);
+				var nbtomove = 0;
+				for (; x < youcells.size() && youcells.get(forward ? youcells.size() - 1 - x : x) == cell; x++) {
+					nbtomove++;
+				}
+				moveEntity(cell, di, dj, type, nbtomove);
+			}
+		}
+		if (metrics != null) {
+			metrics.endMove(tilesmoved);
 		}
 		// Detect and Update all the rule
 		updateAnddetectRule();
+		if (metrics != null) {
+			metrics.endRules(ruleschanged);
+		}
 
 		// After everything has been moved
-		checkSink();
-		checkMeltAndHot();
-		checkDefeat();
-		return checkIfWin();
+		var outcome = checkCells();
+		history.commit();
+		if (metrics != null) {
+			metrics.endTurn(outcome);
+		}
+		return outcome;
 	}
 
-	// Return true if a YOU's entity is on a Win element. False otherwise
-	private boolean checkIfWin() {
-		var lstcoordswin = ElemWithThisRule(PropertyEnum.WIN).stream().flatMap(entity -> entity.getCoords().stream())
-				.collect(Collectors.toList()); // All the WIN coordinate
-		for (var elem : entities) {
-			if (elem.checkWin(lstcoordswin)) { // If the elem is YOU and on a coordinate in lstcoordswin
-				return true;
+	/**
+	 * Undo the last turn, the changes of the turn are undone from the last one to
+	 * the first one.
+	 * 
+	 * @return true if a turn has been undone, false if there is no turn to undo
+	 */
+	public boolean undo() {
+		var turn = history.undo();
+		if (turn == null) {
+			return false;
+		}
+		for (var x = turn.size() - 1; x >= 0; x--) {
+			var change = turn.get(x);
+			var type = History.entityOf(change);
+			switch (History.typeOf(change)) {
+			case History.ADD:
+				removeTile(type, board.cellOf(History.firstOf(change), History.secondOf(change)));
+				break;
+			case History.REMOVE:
+				addTile(type, board.cellOf(History.firstOf(change), History.secondOf(change)));
+				break;
+			default:
+				setRuleMask(type, History.firstOf(change));
+				break;
 			}
 		}
-		return false;
+		if (turn.getRulesBefore() != null) {
+			rulemanager.restore(turn.getRulesBefore());
+			hashRules();
+		}
+		if (turn.getDirtyLines() != null) { // These lines were not read before the turn
+			for (var line : turn.getDirtyLines()) {
+				dirtylines.set(line);
+			}
+			for (var col : turn.getDirtyColumns()) {
+				dirtycols.set(col);
+			}
+		}
+		return true;
 	}
 
-	private void checkDefeat() {
-		var lstcoordsdefeat = ElemWithThisRule(PropertyEnum.DEFEAT).stream()
-				.flatMap(entity -> entity.getCoords().stream()).collect(Collectors.toList());// All the DEFEAT
-																								// coordinate
-		for (var elem : entities) {
-			elem.checkDefeat(lstcoordsdefeat); // If the elem is YOU and on a coordinate in lstcoordsdefeat
+	/**
+	 * Redo the last turn undone.
+	 * 
+	 * @return true if a turn has been redone, false if there is no turn to redo
+	 */
+	public boolean redo() {
+		var turn = history.redo();
+		if (turn == null) {
+			return false;
+		}
+		for (var x = 0; x < turn.size(); x++) {
+			var change = turn.get(x);
+			var type = History.entityOf(change);
+			switch (History.typeOf(change)) {
+			case History.ADD:
+				addTile(type, board.cellOf(History.firstOf(change), History.secondOf(change)));
+				break;
+			case History.REMOVE:
+				removeTile(type, board.cellOf(History.firstOf(change), History.secondOf(change)));
+				break;
+			default:
+				setRuleMask(type, History.secondOf(change));
+				break;
+			}
+		}
+		if (turn.getRulesAfter() != null) {
+			rulemanager.restore(turn.getRulesAfter());
+			hashRules();
 		}
+		return true;
 	}
 
-	private void checkSink() {
-		var lstsinkelems = ElemWithThisRule(PropertyEnum.SINK); // All SINK element
-		for (var elem : lstsinkelems) {
-			var copycoords = List.copyOf(elem.getCoords());
-			for (var coord : copycoords) {
-				var lstentityincoord = getEntityFromCoord(coord); // All element on this coordinate
-				lstentityincoord.remove(elem); // Removing the sink element
-				if (!lstentityincoord.isEmpty()) { // if true : there is an element on this coordinate
-					remove(coord, lstentityincoord.get(0)); // We remove the element
-					remove(coord, elem); // We remove the SINK Element
-					continue;
-				}
+	/**
+	 * Change the memory limit of the history of the turns, the oldest turns are
+	 * forgotten if the history is bigger.
+	 * 
+	 * @param memorylimit the memory limit of the history, in bytes
+	 */
+	public void setHistoryLimit(long memorylimit) {
+		history.setMemoryLimit(memorylimit);
+	}
+
+	/**
+	 * Measure the next turns with a TurnMetrics, the turns are not measured
+	 * anymore if it is null.
+	 * 
+	 * @param metrics the TurnMetrics which measures the turns, or null
+	 */
+	public void setMetrics(TurnMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the state of the level packed in an array : the rules, then for
+	 * each entity its properties and its sorted coordinates. Two levels with the
+	 * same entities have the same state if they are in the same situation.
+	 * 
+	 * @return the state of the level
+	 */
+	public int[] getState() {
+		var rules = rulemanager.getRulemanager();
+		var size = 1 + rules.size() + 2 * entities.size();
+		for (var type = 0; type < entities.size(); type++) {
+			size += store.count(type);
+		}
+		var state = new int[size];
+		var x = 0;
+		state[x++] = rules.size();
+		for (var rule : rules) {
+			state[x++] = rule.toCode();
+		}
+		for (var type = 0; type < entities.size(); type++) {
+			state[x++] = entities.get(type).getRuleMask();
+			state[x++] = store.count(type);
+			var start = x;
+			for (var tile = store.first(type); tile >= 0; tile = store.next(tile)) {
+				state[x++] = store.getCell(tile);
 			}
+			Arrays.sort(state, start, x);
 		}
+		return state;
 	}
 
-	private void checkMeltAndHot() {
-		var lstcoordshot = ElemWithThisRule(PropertyEnum.HOT).stream().flatMap(entity -> entity.getCoords().stream())
-				.collect(Collectors.toList());// All the HOT coordinate
-		for (var elem : entities) {
-			elem.checkAndDeleteMeltandHot(lstcoordshot); // If the element is MELT and on a coordinate in lstcoordshot
+	/**
+	 * Put the level in the state given by {@link #getState()} on a level with the
+	 * same entities. Only the coordinates which differ from the current state are
+	 * changed. The history of the turns is forgotten.
+	 * 
+	 * @param state the state of the level
+	 */
+	public void setState(int[] state) {
+		Objects.requireNonNull(state);
+		history.clear();
+		var current = getState();
+		var x = 0;
+		var y = current[0] + 1;
+		var rules = new ArrayList<Rule>();
+		for (var nbrules = state[x++]; nbrules > 0; nbrules--) {
+			rules.add(Rule.fromCode(state[x++]));
+		}
+		rulemanager.restore(rules);
+		hashRules();
+		for (var type = 0; type < entities.size(); type++) {
+			if (entities.get(type).getRuleMask() != state[x]) {
+				setRuleMask(type, state[x]);
+			}
+			x++;
+			y++;
+			var end = x + 1 + state[x];
+			var currentend = y + 1 + current[y];
+			x++;
+			y++;
+			while (x < end || y < currentend) { // Both lists of cells are sorted
+				if (y == currentend || (x < end && state[x] < current[y])) {
+					addTile(type, state[x++]);
+				} else if (x == end || current[y] < state[x]) {
+					removeTile(type, current[y++]);
+				} else { // The cell is in both states
+					x++;
+					y++;
+				}
+			}
 		}
 	}
 
 	/**
-	 * Transforms a keyboard to a moving direction
+	 * Returns a copy of the level, with new entities in the same state. The copy
+	 * has no history.
 	 * 
-	 * @param keyboard the keyboard pressed
-	 * @param coord    the coord of the YOU entity
-	 * @param entity   the YOU entity
-	 * @param nbtomove number of the same YOU entity on this coordinate
+	 * @return a copy of the level
 	 */
-	private void keyboardToMove(KeyboardKey keyboard, Coordinate coord, BabaEntity entity, long nbtomove) {
-		Objects.requireNonNull(entity);
-		var listentities = new ArrayList<BabaEntity>();
-		for (var i = 0; i < nbtomove; i++) { // Creating the list of entities to move
-			listentities.add(entity);
-		}
-		switch (keyboard) {
-		case UP:
-			moveEntity(new Coordinate(coord.i(), coord.j() - 1), coord, listentities);
-			break;
-		case DOWN:
-			moveEntity(new Coordinate(coord.i(), coord.j() + 1), coord, listentities);
-			break;
-		case LEFT:
-			moveEntity(new Coordinate(coord.i() - 1, coord.j()), coord, listentities);
-			break;
-		case RIGHT:
-			moveEntity(new Coordinate(coord.i() + 1, coord.j()), coord, listentities);
-			break;
-		default:
-			break;
-		}
-
-	}
-
-	// Recursive method to check if we can move elements in the currentcoord
-	// We have to take care of STOP elements and PUSH elements
-	// We introduce a GHOSTLY property, it canceled the property STOP of an element
-	private boolean moveEntity(Coordinate newcoord, Coordinate currentcoord, List<BabaEntity> elems) {
-		var i = newcoord.i();
-		var j = newcoord.j();
-		if ((i >= 0 && i <= cols) && (j >= 0 && j <= lines)) { // In the limits of the board
-
-			if (!entities.stream().flatMap(entity -> entity.getCoords().stream())
-					.anyMatch(coord -> coord.equals(newcoord))) { // if there is nothing on the new Coord
-				add(newcoord, elems);
-				remove(currentcoord, elems);
-				return true;
+	public LevelManager copy() {
+		var copy = new LevelManager(lines, cols);
+		for (var entity : entities) {
+			if (entity instanceof Text) {
+				copy.addEntity(new Text(((Text) entity).getWord()));
 			} else {
+				copy.addEntity(new BabaElement(((BabaElement) entity).getElement()));
+			}
+		}
+		copy.setState(getState());
+		return copy;
+	}
 
-				// Map of PUSH elems in the new coord and how many there are
-				var lstpushelems = ElemWithThisRule(PropertyEnum.PUSH).stream().filter(
-						entity -> entity.isOnThisCoord(newcoord) && !entity.getRuleOfElem().contains(PropertyEnum.YOU))
-						.collect(Collectors.toMap(elem -> elem, elem -> elem.nbOfElementInThisCoord(newcoord)));
+	// Set the properties of an element and update its cells
+	private void setRuleMask(int type, int mask) {
+		if (entities.get(type) instanceof BabaElement) {
+			var elem = (BabaElement) entities.get(type);
+			for (var prop : PropertyEnum.values()) {
+				if ((mask & prop.getMask()) != 0) {
+					elem.addRule(prop);
+				} else {
+					elem.removeRule(prop);
+				}
+			}
+			refresh(type);
+		}
+	}
 
-				// List of stop (and not ghostly) elems in the new coord
-				var lststopelems = ElemWithThisRule(PropertyEnum.STOP).stream()
-						.filter(entity -> (entity.isOnThisCoord(newcoord)
-								&& !entity.getRuleOfElem().contains(PropertyEnum.GHOSTLY)))
-						.collect(Collectors.toList());
+	// Update the cells of an entity whose properties have changed, the order of
+	// the entities drawn on them can change too
+	private void refresh(int type) {
+		for (var tile = store.first(type); tile >= 0; tile = store.next(tile)) {
+			board.refresh(store.getCell(tile));
+			changedcells.set(store.getCell(tile));
+			pending(store.getCell(tile));
+		}
+	}
 
-				lststopelems.removeAll(lstpushelems.keySet()); // If stop elems are pushable
+	/**
+	 * Returns true if a cell has changed since the last call to
+	 * {@link #takeChangedCells(BitSet)}.
+	 * 
+	 * @return true if a cell has changed
+	 */
+	public boolean hasChanged() {
+		return !changedcells.isEmpty();
+	}
 
-				// If there are PUSH elem and not STOP elem
-				if ((!lstpushelems.isEmpty() && lststopelems.isEmpty()) || (!lstpushelems.isEmpty()
-						&& elems.stream().allMatch(entity -> entity.getRuleOfElem().contains(PropertyEnum.GHOSTLY)))) {
+	/**
+	 * Add the cells which have changed since the last call to a set, and forget
+	 * them. A cell is given by its index j * (cols + 1) + i.
+	 * 
+	 * @param cells the set where the changed cells are added
+	 * @return true if a cell has changed
+	 */
+	public boolean takeChangedCells(BitSet cells) {
+		Objects.requireNonNull(cells);
+		if (changedcells.isEmpty()) {
+			return false;
+		}
+		cells.or(changedcells);
+		changedcells.clear();
+		return true;
+	}
+
+	// Add a cell to the cells to check at the end of the turn, a cell changed
+	// several times in a row is added once
+	private void pending(int cell) {
+		if (checkall || checking) {
+			return;
+		}
+		if (pendingcells.isEmpty() || pendingcells.get(pendingcells.size() - 1) != cell) {
+			pendingcells.add(cell);
+		}
+	}
 
-					var listentities = new ArrayList<BabaEntity>();
-					for (var elem : lstpushelems.keySet()) {
-						for (var x = 0; x < lstpushelems.get(elem); x++) { // Creating the list of entities to move
-							listentities.add(elem);
-						}
+	// Apply the effects of the end of the turn on the cells to check, and returns
+	// the outcome of the turn. The effects only depend on the entities of the
+	// cell, so a cell which has not changed since it was last checked, and where
+	// no effect was active, is not checked again. On each cell, the SINK elements
+	// sink, then the MELT elements on a HOT cell melt, then the YOU elements on a
+	// DEFEAT cell are destroyed, and the cell is won if a YOU element is still on
+	// a WIN cell. The cells where an effect is still active are checked again at
+	// the next turn
+	private TurnOutcome checkCells() {
+		if (checkall) { // An effect needs a SINK, a MELT or a YOU element on the cell
+			checkall = false;
+			var triggers = PropertyEnum.SINK.getMask() | PropertyEnum.MELT.getMask() | PropertyEnum.YOU.getMask();
+			for (var type = 0; type < entities.size(); type++) {
+				if ((entities.get(type).getRuleMask() & triggers) != 0) {
+					for (var tile = store.first(type); tile >= 0; tile = store.next(tile)) {
+						pending(store.getCell(tile));
 					}
+				}
+			}
+		}
+		var cells = pendingcells;
+		pendingcells = checkedcells;
+		checkedcells = cells;
+		cells.sort();
+		var win = false;
+		checking = true;
+		for (var x = 0; x < cells.size(); x++) {
+			var cell = cells.get(x);
+			if (x > 0 && cells.get(x - 1) == cell) {
+				continue;
+			}
+			win |= checkCell(cell);
+			if (isActive(cell)) {
+				pendingcells.add(cell);
+			}
+		}
+		checking = false;
+		cells.clear();
+		if (win) {
+			return TurnOutcome.WIN;
+		}
+		return isLost() ? TurnOutcome.LOSE : TurnOutcome.CONTINUE;
+	}
 
-					if (moveEntity(new Coordinate(i + (i - currentcoord.i()), j + (j - currentcoord.j())), newcoord,
-							listentities)) { // If we can move elements in the current coord
+	// Apply the effects of the end of the turn on a cell, returns true if a YOU's
+	// entity is on a WIN element
+	private boolean checkCell(int cell) {
+		if ((board.getMask(cell) & PropertyEnum.SINK.getMask()) != 0) {
+			checkSink(cell);
+		}
+		if (hasRules(board.getMask(cell), PropertyEnum.MELT, PropertyEnum.HOT)) {
+			removeWithThisRule(cell, PropertyEnum.MELT);
+		}
+		if (hasRules(board.getMask(cell), PropertyEnum.YOU, PropertyEnum.DEFEAT)) {
+			removeWithThisRule(cell, PropertyEnum.YOU);
+		}
+		return hasRules(board.getMask(cell), PropertyEnum.YOU, PropertyEnum.WIN);
+	}
 
-						add(newcoord, elems);
-						remove(currentcoord, elems);
-						return true;
+	// Returns true if an effect of the end of the turn would change the cell, or
+	// if the cell is won
+	private boolean isActive(int cell) {
+		var mask = board.getMask(cell);
+		return ((mask & PropertyEnum.SINK.getMask()) != 0 && board.get(cell).size() > 1)
+				|| hasRules(mask, PropertyEnum.MELT, PropertyEnum.HOT)
+				|| hasRules(mask, PropertyEnum.YOU, PropertyEnum.DEFEAT)
+				|| hasRules(mask, PropertyEnum.YOU, PropertyEnum.WIN);
+	}
+
+	// Returns true if the mask of a cell has the property first and the property
+	// second, they can be given by the same entity
+	private static boolean hasRules(int mask, PropertyEnum first, PropertyEnum second) {
+		return (mask & first.getMask()) != 0 && (mask & second.getMask()) != 0;
+	}
+
+	// Each SINK element of the cell sinks with another entity of the cell, the
+	// elements are taken in the order of the level
+	private void checkSink(int cell) {
+		for (var type = 0; type < entities.size(); type++) {
+			var elem = entities.get(type);
+			if (!elem.hasRule(PropertyEnum.SINK)) {
+				continue;
+			}
+			for (var n = board.count(cell, elem); n > 0; n--) { // As many times as the element was on the cell
+				var other = otherEntity(cell, elem);
+				if (other != null) {
+					removeTile(typeOf(other), cell); // We remove the element
+					removeTile(type, cell); // We remove the SINK Element
+				}
+			}
+		}
+	}
+
+	// Returns the first entity of the cell in the order of the level, the first
+	// occurrence of the entity excepted, null if there is none
+	private BabaEntity otherEntity(int cell, BabaEntity entity) {
+		var skipped = false;
+		for (var elem : board.get(cell)) {
+			if (!skipped && elem.equals(entity)) {
+				skipped = true;
+			} else {
+				return elem;
+			}
+		}
+		return null;
+	}
+
+	// Remove all the entities of the cell with the property rule. They are all
+	// found before removing anything
+	private void removeWithThisRule(int cell, PropertyEnum rule) {
+		buffer.clear();
+		for (var elem : board.get(cell)) {
+			if (elem.hasRule(rule)) {
+				buffer.add(typeOf(elem));
+			}
+		}
+		for (var x = 0; x < buffer.size(); x++) {
+			removeTile(buffer.get(x), cell);
+		}
+	}
+
+	// Move nbtomove times the entity from the currentcell to the next cell in the
+	// direction di,dj, pushing what is in front of it.
+	// The cells in front are first walked to know which entities are pushed and if
+	// the whole chain can move, then the chain is moved from the last cell to the
+	// first one. The chain is kept in buffers reused from one move to the other.
+	// We have to take care of STOP elements and PUSH elements
+	// We introduce a GHOSTLY property, it canceled the property STOP of an element
+	private boolean moveEntity(int currentcell, int di, int dj, int type, long nbtomove) {
+		growChain(1, 1);
+		chainentities[0] = entities.get(type);
+		chaincounts[0] = nbtomove;
+		chainends[0] = 1;
+		var depth = 0; // Index of the last cell of the chain
+		var i = board.iOf(currentcell);
+		var j = board.jOf(currentcell);
+		for (;;) {
+			var start = depth == 0 ? 0 : chainends[depth - 1];
+			var end = chainends[depth];
+			i += di;
+			j += dj;
+			if (!board.isInside(i, j)) { // Out of the limits of the board
+				return false;
+			}
+			var cell = board.get(i, j);
+			if (cell.isEmpty()) { // if there is nothing on the new Coord
+				break;
+			}
+			var ghostly = allHaveThisRule(start, end, PropertyEnum.GHOSTLY);
+			var nbpush = end;
+			var stop = false; // If there are stop (and not ghostly) elems, which are not pushable
+			if ((board.getMask(i, j) & (PropertyEnum.PUSH.getMask() | PropertyEnum.STOP.getMask())) != 0) {
+				for (var elem : cell) {
+					if (elem.hasRule(PropertyEnum.PUSH) && !elem.hasRule(PropertyEnum.YOU)) {
+						nbpush = addToChain(end, nbpush, elem);
+					} else if (elem.hasRule(PropertyEnum.STOP) && !elem.hasRule(PropertyEnum.GHOSTLY)) {
+						stop = true;
 					}
 				}
-				// if there is no STOP element or there are but there are GHOSTLY
-				else if ((lststopelems.isEmpty()) || (!lststopelems.isEmpty()
-						&& elems.stream().allMatch(entity -> entity.getRuleOfElem().contains(PropertyEnum.GHOSTLY)))) {
-					add(newcoord, elems);
-					remove(currentcoord, elems);
-					return true;
+			}
+			if (nbpush != end && (!stop || ghostly)) { // The PUSH elems have to move in the next cell
+				depth++;
+				growChain(nbpush, depth + 1);
+				chainends[depth] = nbpush;
+			} else if (!stop || ghostly) { // There is no STOP element or there are but we are GHOSTLY
+				break;
+			} else {
+				return false;
+			}
+		}
+		for (var level = depth; level >= 0; level--) { // Move the chain, from the last cell
+			var ci = board.iOf(currentcell) + level * di;
+			var cj = board.jOf(currentcell) + level * dj;
+			var cell = board.cellOf(ci, cj);
+			var newcell = board.cellOf(ci + di, cj + dj);
+			var start = level == 0 ? 0 : chainends[level - 1];
+			for (var x = start; x < chainends[level]; x++) {
+				var chaintype = typeOf(chainentities[x]);
+				for (var n = 0; n < chaincounts[x]; n++) {
+					relocate(cell, newcell, chaintype);
 				}
 			}
 		}
-		return false;
+		return true;
+	}
+
+	// Add one time the entity in the chain, between the index start and end
+	// Returns the new end
+	private int addToChain(int start, int end, BabaEntity entity) {
+		for (var x = start; x < end; x++) {
+			if (chainentities[x].equals(entity)) {
+				chaincounts[x]++;
+				return end;
+			}
+		}
+		growChain(end + 1, 0);
+		chainentities[end] = entity;
+		chaincounts[end] = 1;
+		return end + 1;
+	}
+
+	// Grow the buffers of the chain if they are too small
+	private void growChain(int nbentities, int nbcells) {
+		if (nbentities > chainentities.length) {
+			var length = Math.max(nbentities, chainentities.length * 2);
+			chainentities = Arrays.copyOf(chainentities, length);
+			chaincounts = Arrays.copyOf(chaincounts, length);
+		}
+		if (nbcells > chainends.length) {
+			chainends = Arrays.copyOf(chainends, Math.max(nbcells, chainends.length * 2));
+		}
+	}
+
+	// Returns true if all the entities of the chain, between the index start and
+	// end, have the property rule
+	private boolean allHaveThisRule(int start, int end, PropertyEnum rule) {
+		var mask = -1;
+		for (var x = start; x < end; x++) {
+			mask &= chainentities[x].getRuleMask();
+		}
+		return (mask & rule.getMask()) != 0;
 	}
 
 	/**
@@ -308,10 +935,99 @@ public class LevelManager {
 	}
 
 	/**
-	 * Detect and update rule of the board.
+	 * Detect and update rule of the board. Only the lines and columns where a Text
+	 * has changed since the last call are read again, nothing is read if no Text
+	 * has changed. The lists of the level and the buffers of the rules are reused,
+	 * a turn where no Text has changed allocates nothing.
 	 */
 	public void updateAnddetectRule() {
-		rulemanager.updateAnddetectRule(getAllText(), getAllElement());
+		if (!dirtylines.isEmpty() || !dirtycols.isEmpty()) {
+			var nbelements = elements.size();
+			if (oldmasks.length < nbelements) {
+				oldmasks = new int[Math.max(nbelements, 2 * oldmasks.length)];
+			}
+			for (var x = 0; x < nbelements; x++) {
+				oldmasks[x] = elements.get(x).getRuleMask();
+			}
+			var rules = rulemanager.getRulemanager();
+			oldrules.clear();
+			for (var x = 0; x < rules.size(); x++) {
+				oldrules.add(rules.get(x));
+			}
+			rulemanager.updateAnddetectRule(texts, elements, dirtylines, dirtycols);
+			dirtylines.clear();
+			dirtycols.clear();
+			hashRules();
+			history.recordRules(oldrules, rulemanager.getRulemanager());
+			if (metrics != null) {
+				ruleschanged += countChanges(oldrules, rulemanager.getRulemanager());
+			}
+			for (var x = 0; x < nbelements; x++) { // Update the cells of the elements whose properties changed
+				var elem = elements.get(x);
+				if (elem.getRuleMask() != oldmasks[x]) {
+					var type = elem.getType();
+					history.recordMask(type, oldmasks[x], elem.getRuleMask());
+					refresh(type);
+				}
+			}
+		}
+		var rules = rulemanager.getRulemanager();
+		for (var x = 0; x < rules.size(); x++) { // Apply the NOUN IS NOUN rules
+			var rule = rules.get(x);
+			if (rule.getProp() instanceof NounTextEnum) {
+				changeNoun(rule);
+			}
+		}
+	}
+
+	// Change all the tiles of the noun of a NOUN IS NOUN rule in the other noun.
+	// The cells are copied before, the tiles of the noun are walked in the order
+	// of the store
+	private void changeNoun(Rule rule) {
+		var type = typeOfNoun((NounTextEnum) rule.getNoun());
+		if (type < 0 || store.count(type) == 0) {
+			return;
+		}
+		nouncells.clear();
+		for (var tile = store.first(type); tile >= 0; tile = store.next(tile)) {
+			nouncells.add(store.getCell(tile));
+		}
+		var entity = rule.getEntityFromNounText(elements);
+		addEntity(entity);
+		var type2 = entity.getType();
+		for (var x = 0; x < nouncells.size(); x++) {
+			var cell = nouncells.get(x);
+			addTile(type2, cell);
+			removeTile(type, cell);
+		}
+	}
+
+	// The type of the element of a noun, -1 if the level has no such element
+	private int typeOfNoun(NounTextEnum noun) {
+		var element = NounImgEnum.valueOf(noun.name());
+		for (var x = 0; x < elements.size(); x++) {
+			var elem = elements.get(x);
+			if (elem.getElement() == element) {
+				return elem.getType();
+			}
+		}
+		return -1;
+	}
+
+	// Returns the number of rules which are only in one of the lists
+	private static int countChanges(List<Rule> before, List<Rule> after) {
+		var changes = 0;
+		for (var rule : before) {
+			if (!after.contains(rule)) {
+				changes++;
+			}
+		}
+		for (var rule : after) {
+			if (!before.contains(rule)) {
+				changes++;
+			}
+		}
+		return changes;
 	}
 
 	/**
@@ -320,8 +1036,7 @@ public class LevelManager {
 	 * @return all the Text of the level.
 	 */
 	public List<Text> getAllText() {
-		return entities.stream().filter(entity -> entity instanceof Text).map(text -> (Text) text)
-				.collect(Collectors.toList());
+		return new ArrayList<>(texts);
 	}
 
 	/**
@@ -330,8 +1045,7 @@ public class LevelManager {
 	 * @return all the BabaElement of the level.
 	 */
 	public List<BabaElement> getAllElement() {
-		return entities.stream().filter(entity -> entity instanceof BabaElement).map(elem -> (BabaElement) elem)
-				.collect(Collectors.toList());
+		return new ArrayList<>(elements);
 	}
 
 	/**
@@ -342,16 +1056,20 @@ public class LevelManager {
 	 */
 	public List<BabaEntity> getEntityFromCoord(Coordinate coordinate) {
 		Objects.requireNonNull(coordinate);
-		var lstentity = new ArrayList<BabaEntity>();
-		for (var entity : entities) {
-			var lstcoords = entity.getCoords();
-			for (var coord : lstcoords) {
-				if (coord.equals(coordinate)) {
-					lstentity.add(entity);
-				}
-			}
-		}
-		return lstentity;
+		return new ArrayList<>(board.get(coordinate));
+	}
+
+	/**
+	 * Returns the entities on the cell i,j, in the order of the level. The
+	 * returned list is a view of the board, it must not be modified and it changes
+	 * with the turns.
+	 * 
+	 * @param i the column of the cell
+	 * @param j the line of the cell
+	 * @return the entities on the cell, an empty list if the cell is empty
+	 */
+	public List<BabaEntity> getEntities(int i, int j) {
+		return board.get(i, j);
 	}
 
 	/**
@@ -361,7 +1079,13 @@ public class LevelManager {
 	 * @return all the BabaEntity with the following property.
 	 */
 	public List<BabaEntity> ElemWithThisRule(PropertyEnum rule) {
-		return entities.stream().filter(entity -> entity.getRuleOfElem().contains(rule)).collect(Collectors.toList());
+		var lstentity = new ArrayList<BabaEntity>();
+		for (var entity : entities) {
+			if (entity.hasRule(rule)) {
+				lstentity.add(entity);
+			}
+		}
+		return lstentity;
 	}
 
 }
\ No newline at end of file
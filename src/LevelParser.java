@@ -1,70 +1,152 @@
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * LevelParser parse a correct file save to create a LevelManager
  */
 public class LevelParser {
+	private static final String[] DIRECTIVES = { "nt", "ni", "o", "p" };
+	private static final String[] NOUNS = namesOf(NounTextEnum.values());
+	private static final String[] IMAGES = namesOf(NounImgEnum.values());
+	private static final String[] OPERATORS = namesOf(OperatorEnum.values());
+	private static final String[] PROPERTIES = namesOf(PropertyEnum.values());
+	private static final NounImgEnum[] ELEMENTS = elementsOf(NounTextEnum.values());
 
 	/**
-	 * Create the level.
+	 * Create the level, without loading any image. The rules of the level are not
+	 * detected yet, {@link LevelManager#updateAnddetectRule()} has to be called
+	 * before the first move. A file with the extension of the binary levels is
+	 * loaded by {@link LevelCompiler#load(String)}.
 	 * 
-	 * @param filename    the filename to read
-	 * @param leveldesign to load all the ImageIcon associated to the Entity
+	 * @param filename the filename to read
 	 * @return a new LevelManager
 	 * @throws IOException throw a IOException if the file is not correctly written,
 	 *                     or empty
 	 */
-	public static LevelManager initialise(String filename, LevelDesign leveldesign) throws IOException {
+	public static LevelManager initialise(String filename) throws IOException {
+		if (filename.endsWith(LevelCompiler.EXTENSION)) {
+			return LevelCompiler.load(filename);
+		}
+		try (var tokenizer = new LevelTokenizer(Files.newInputStream(Path.of(filename)), filename)) {
+			return parse(tokenizer);
+		}
+	}
 
-		var savefilepath = Path.of(filename);
-		var reader = Files.newBufferedReader(savefilepath, StandardCharsets.UTF_8);
-		if (!reader.ready()) { // If the file is empty
-			throw new IOException(filename + ": file empty");
+	/**
+	 * Create the level written in the text format, read by a LevelTokenizer. The
+	 * first line gives the number of lines and the number of columns, then each
+	 * entity is declared by nt, ni, o or p followed by its name, and followed by
+	 * its coordinates, one by line.
+	 * 
+	 * @param tokenizer the tokenizer of the file
+	 * @return a new LevelManager
+	 * @throws IOException throw a IOException with the line and the column of the
+	 *                     first error of the file
+	 */
+	public static LevelManager parse(LevelTokenizer tokenizer) throws IOException {
+		if (!tokenizer.nextLine()) { // If the file is empty
+			throw tokenizer.error("file empty");
+		}
+		var sizecolumn = tokenizer.getColumn();
+		var lines = tokenizer.readInt();
+		var cols = tokenizer.readInt();
+		if (lines < 0 || cols < 0 || (lines + 1L) * (cols + 1L) > Integer.MAX_VALUE) { // The cells are packed in ints
+			throw tokenizer.error("wrong size " + lines + "x" + cols, sizecolumn);
 		}
-		String ligne;
-		var firstline = reader.readLine().split(" ");
+		var level = new LevelManager(lines, cols); // Create the LevelManager
+		tokenizer.endLine();
 		BabaEntity entity = null;
-		var level = new LevelManager(Integer.parseInt(firstline[0]), Integer.parseInt(firstline[1])); // Create the
-																										// LevelManager
-		while ((ligne = reader.readLine()) != null) {
-			var tab = ligne.split(" ");
-			switch (tab[0]) {
-			case "nt": // Create a Text, and create a BabaElement associated
-				entity = new Text(NounTextEnum.valueOf(tab[1]));
-				BabaEntity other = new BabaElement(NounImgEnum.valueOf(tab[1]));
-				leveldesign.add(other);
-				leveldesign.add(entity);
-				level.addEntity(other);
-				break;
-			case "ni": // Create a BabaElement
-				entity = new BabaElement(NounImgEnum.valueOf(tab[1]));
-				leveldesign.add(entity);
-				break;
-			case "o": // Create a Operator
-				entity = new Text(OperatorEnum.valueOf(tab[1]));
-				leveldesign.add(entity);
+		var width = cols + 1;
+		var cells = new int[256]; // The cells of all the entities, packed in ints j * (cols + 1) + i
+		var nbcells = 0;
+		var start = 0; // The first cell of the current entity
+		var types = new IntList(); // The type of each entity with cells, and the end of its cells
+		var ends = new IntList();
+		while (tokenizer.nextLine()) {
+			if (tokenizer.isNumber()) { // A coordinate of the entity
+				if (entity == null) { // If the file is not correctly written
+					throw tokenizer.error("coordinate before the first entity");
+				}
+				var column = tokenizer.getColumn();
+				var i = tokenizer.readInt();
+				var j = tokenizer.readInt();
+				if (i < 0 || i > level.getCols() || j < 0 || j > level.getLines()) {
+					throw tokenizer.error(new Coordinate(i, j) + " is outside the board", column);
+				}
+				tokenizer.endLine();
+				if (nbcells == cells.length) {
+					cells = Arrays.copyOf(cells, nbcells * 2);
+				}
+				cells[nbcells++] = j * width + i;
+				continue;
+			}
+			addEntity(level, entity, start, nbcells, types, ends);
+			start = nbcells;
+			switch (tokenizer.readWord(DIRECTIVES, "directive")) {
+			case 0: // nt : create a Text, and create a BabaElement associated
+				var noun = NounTextEnum.values()[tokenizer.readWord(NOUNS, "noun")];
+				if (ELEMENTS[noun.ordinal()] == null) {
+					throw tokenizer.error("no element for the noun " + noun);
+				}
+				entity = new Text(noun);
+				level.addEntity(new BabaElement(ELEMENTS[noun.ordinal()]));
 				break;
-			case "p": // Create a Property
-				entity = new Text(PropertyEnum.valueOf(tab[1]));
-				leveldesign.add(entity);
+			case 1: // ni : create a BabaElement
+				entity = new BabaElement(NounImgEnum.values()[tokenizer.readWord(IMAGES, "element")]);
 				break;
-			case "":
+			case 2: // o : create a Operator
+				entity = new Text(OperatorEnum.values()[tokenizer.readWord(OPERATORS, "operator")]);
 				break;
-			default:
-				if (entity == null) { // If the file is not correctly written
-					throw new IOException(filename + ": file not correctly written");
-				}
-				level.add(new Coordinate(Integer.parseInt(tab[0]), Integer.parseInt(tab[1])), entity); // Add a
-																										// coordinate to
-																										// the Entity
+			default: // p : create a Property
+				entity = new Text(PropertyEnum.values()[tokenizer.readWord(PROPERTIES, "property")]);
 				break;
 			}
+			tokenizer.endLine();
+		}
+		addEntity(level, entity, start, nbcells, types, ends);
+		level.reserveTiles(nbcells); // The store is sized once, the cells are added in the order they were read
+		start = 0;
+		for (var x = 0; x < types.size(); x++) {
+			level.addCells(types.get(x), cells, start, ends.get(x) - start);
+			start = ends.get(x);
 		}
-		reader.close();
 		return level;
 	}
 
+	// Add the entity to the level if cells were read for it, from start to end,
+	// and keep its type, resolved once for all its cells, and the end of its
+	// cells. An entity without any cell is not added to the level
+	private static void addEntity(LevelManager level, BabaEntity entity, int start, int end, IntList types,
+			IntList ends) {
+		if (end != start) {
+			level.addEntity(entity);
+			types.add(level.typeOf(entity));
+			ends.add(end);
+		}
+	}
+
+	// The names of the values of an enum
+	private static String[] namesOf(Enum<?>[] values) {
+		var names = new String[values.length];
+		for (var x = 0; x < values.length; x++) {
+			names[x] = values[x].name();
+		}
+		return names;
+	}
+
+	// The element of each noun, null if the noun has no element
+	private static NounImgEnum[] elementsOf(NounTextEnum[] nouns) {
+		var elements = new NounImgEnum[nouns.length];
+		for (var noun : nouns) {
+			for (var element : NounImgEnum.values()) {
+				if (element.name().equals(noun.name())) {
+					elements[noun.ordinal()] = element;
+				}
+			}
+		}
+		return elements;
+	}
+
 }
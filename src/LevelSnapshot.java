@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * LevelSnapshot is a level saved in the middle of a game, with the name of its
+ * file, to be played again from the same state. The binary format of a
+ * snapshot is :
+ * <ul>
+ * <li>A header : the magic number, the version, the number of lines, the number
+ * of columns, the number of entities and the number of rules, as ints, then the
+ * length of the name of the level as a short and the name in UTF-8</li>
+ * <li>A table of the entities, 12 bytes each : the kind (element or text), the
+ * code of the noun or the word, 2 bytes unused, the properties of the entity
+ * and its number of coordinates</li>
+ * <li>The active rules, packed in ints by {@link Rule#toCode()}</li>
+ * <li>For each entity of the table, its sorted coordinates packed in ints, j *
+ * (cols + 1) + i, each one written as its difference with the previous one in
+ * 7 bits bytes, so a coordinate near the previous one takes one byte</li>
+ * </ul>
+ * The snapshot keeps the state given by {@link LevelManager#getState()}, the
+ * history of the turns is not saved. The order of the entities of a cell is not
+ * saved either : the board keeps a cell in the order of the level, so the
+ * loaded level plays the next turns as the saved one. A snapshot is read in
+ * one bulk read of the whole file, then the level is put in its state without
+ * detecting the rules.
+ *
+ * @param levelname the name of the file of the level
+ * @param level     the level in its saved state
+ */
+public record LevelSnapshot(String levelname, LevelManager level) {
+	/**
+	 * The extension of the snapshot files
+	 */
+	public static final String EXTENSION = ".babs";
+
+	private static final int MAGIC = 0x42414253; // "BABS"
+	private static final int VERSION = 1;
+	private static final int HEADERSIZE = 6 * 4 + 2;
+	private static final int ENTRYSIZE = 12;
+	private static final byte ELEMENT = 0;
+	private static final byte TEXT = 1;
+
+	/**
+	 * Create a new LevelSnapshot.
+	 *
+	 * @param levelname the name of the file of the level
+	 * @param level     the level in its saved state
+	 */
+	public LevelSnapshot {
+		Objects.requireNonNull(levelname);
+		Objects.requireNonNull(level);
+	}
+
+	/**
+	 * Write the snapshot of the level in its current state.
+	 *
+	 * @param target the file of the snapshot, replaced if it exists
+	 * @throws IOException throw a IOException if the target can not be written
+	 */
+	public void save(Path target) throws IOException {
+		Objects.requireNonNull(target);
+		var name = levelname.getBytes(StandardCharsets.UTF_8);
+		if (name.length > Short.MAX_VALUE) {
+			throw new IOException(target + ": level name too long");
+		}
+		var entities = level.getData();
+		var state = level.getState();
+		var nbrules = state[0];
+		// A coordinate takes 5 bytes at most
+		var size = (long) HEADERSIZE + name.length + (long) ENTRYSIZE * entities.size() + 4L * nbrules
+				+ 5L * (state.length - 1 - nbrules - 2 * entities.size());
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(target + ": level too big");
+		}
+		var buffer = ByteBuffer.allocate((int) size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(level.getLines()).putInt(level.getCols())
+				.putInt(entities.size()).putInt(nbrules).putShort((short) name.length).put(name);
+		var x = 1 + nbrules;
+		for (var entity : entities) {
+			if (entity instanceof Text) {
+				buffer.put(TEXT).put((byte) Rule.codeOf(((Text) entity).getWord()));
+			} else {
+				buffer.put(ELEMENT).put((byte) ((BabaElement) entity).getElement().ordinal());
+			}
+			buffer.putShort((short) 0).putInt(state[x]).putInt(state[x + 1]);
+			x += 2 + state[x + 1];
+		}
+		for (x = 1; x <= nbrules; x++) {
+			buffer.putInt(state[x]);
+		}
+		x = 1 + nbrules;
+		for (var type = 0; type < entities.size(); type++) {
+			var end = x + 2 + state[x + 1];
+			var previous = 0;
+			for (x += 2; x < end; x++) {
+				putDelta(buffer, state[x] - previous);
+				previous = state[x];
+			}
+		}
+		buffer.flip();
+		try (var channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	// Write a difference which is not negative, 7 bits by byte, the high bit is
+	// set on all the bytes but the last one
+	private static void putDelta(ByteBuffer buffer, int delta) {
+		while ((delta & ~0x7F) != 0) {
+			buffer.put((byte) (delta & 0x7F | 0x80));
+			delta >>>= 7;
+		}
+		buffer.put((byte) delta);
+	}
+
+	// Read a difference written by putDelta
+	private static int getDelta(ByteBuffer buffer, Path source) throws IOException {
+		var delta = 0;
+		for (var shift = 0; shift < 32; shift += 7) {
+			var b = buffer.get();
+			delta |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return delta;
+			}
+		}
+		throw new IOException(source + ": wrong coordinate");
+	}
+
+	/**
+	 * Read a snapshot. The level is in the saved state, with its rules, the rules
+	 * are not detected again.
+	 *
+	 * @param source the file of the snapshot
+	 * @return the snapshot read
+	 * @throws IOException throw a IOException if the file is not a correct
+	 *                     snapshot
+	 */
+	public static LevelSnapshot load(Path source) throws IOException {
+		Objects.requireNonNull(source);
+		ByteBuffer buffer;
+		try (var channel = FileChannel.open(source, StandardOpenOption.READ)) {
+			var filesize = channel.size();
+			if (filesize < HEADERSIZE || filesize > Integer.MAX_VALUE) {
+				throw new IOException(source + ": not a snapshot");
+			}
+			buffer = ByteBuffer.allocate((int) filesize);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// The whole file is read at once, unless the channel gives less
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException(source + ": truncated snapshot");
+			}
+			buffer.flip();
+		}
+		try {
+			return read(buffer, source);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(source + ": truncated snapshot", e);
+		}
+	}
+
+	// Read the snapshot in the buffer
+	private static LevelSnapshot read(ByteBuffer buffer, Path source) throws IOException {
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException(source + ": not a snapshot");
+		}
+		var version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException(source + ": unknown version " + version);
+		}
+		var lines = buffer.getInt();
+		var cols = buffer.getInt();
+		var nbentities = buffer.getInt();
+		var nbrules = buffer.getInt();
+		var namelength = buffer.getShort();
+		if (lines < 0 || cols < 0 || (lines + 1L) * (cols + 1L) > Integer.MAX_VALUE || nbentities < 0
+				|| nbentities > buffer.remaining() / ENTRYSIZE || nbrules < 0 || nbrules > buffer.remaining() / 4
+				|| namelength < 0) {
+			throw new IOException(source + ": wrong header");
+		}
+		var name = new byte[namelength];
+		buffer.get(name);
+		var level = new LevelManager(lines, cols);
+		var total = 0L;
+		var masks = new int[nbentities];
+		var counts = new int[nbentities];
+		for (var x = 0; x < nbentities; x++) {
+			var kind = buffer.get();
+			var code = buffer.get() & 0xFF;
+			buffer.getShort();
+			masks[x] = buffer.getInt();
+			counts[x] = buffer.getInt();
+			if (counts[x] < 0) {
+				throw new IOException(source + ": wrong number of coordinates");
+			}
+			level.addEntity(entityOf(kind, code, source));
+			total += counts[x];
+		}
+		if (level.getData().size() != nbentities) {
+			throw new IOException(source + ": an entity is written twice");
+		}
+		// Each coordinate takes one byte at least, after the rules
+		if (total > buffer.remaining() - 4L * nbrules) {
+			throw new IOException(source + ": wrong number of coordinates");
+		}
+		var state = new int[(int) (1 + nbrules + 2L * nbentities + total)];
+		state[0] = nbrules;
+		for (var x = 1; x <= nbrules; x++) {
+			state[x] = buffer.getInt();
+			try {
+				Rule.fromCode(state[x]);
+			} catch (IllegalArgumentException | IndexOutOfBoundsException | ClassCastException e) {
+				throw new IOException(source + ": unknown rule " + state[x], e);
+			}
+		}
+		var cells = (lines + 1) * (cols + 1);
+		var x = 1 + nbrules;
+		for (var type = 0; type < nbentities; type++) {
+			state[x++] = masks[type];
+			state[x++] = counts[type];
+			var cell = 0L;
+			for (var n = 0; n < counts[type]; n++) {
+				cell += getDelta(buffer, source) & 0xFFFFFFFFL;
+				if (cell >= cells) {
+					throw new IOException(source + ": cell " + cell + " is outside the board");
+				}
+				state[x++] = (int) cell;
+			}
+		}
+		if (buffer.hasRemaining()) {
+			throw new IOException(source + ": unexpected data at the end");
+		}
+		level.setState(state);
+		return new LevelSnapshot(new String(name, StandardCharsets.UTF_8), level);
+	}
+
+	// The entity of an entry of the table
+	private static BabaEntity entityOf(byte kind, int code, Path source) throws IOException {
+		try {
+			if (kind == ELEMENT) {
+				return new BabaElement(NounImgEnum.values()[code]);
+			} else if (kind == TEXT) {
+				return new Text(Rule.wordOf(code));
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException(source + ": unknown entity code " + code, e);
+		}
+		throw new IOException(source + ": unknown entity kind " + kind);
+	}
+}
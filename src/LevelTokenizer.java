@@ -0,0 +1,287 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * LevelTokenizer reads the words and the numbers of a level file. This class is
+ * characterized by the following information :
+ * <ul>
+ * <li>The stream of the file and the buffer of the bytes read</li>
+ * <li>The buffer of the last word read</li>
+ * <li>The name of the file, for the errors</li>
+ * <li>The line and the column of the next character</li>
+ * </ul>
+ * The file is read byte by byte through the buffer, the words are compared to
+ * the expected ones and the numbers are computed directly from the digits, so
+ * no String is created while reading a correct file. A level file is written in
+ * ASCII, the lines end with \n, \r\n or \r. The errors give the line and the
+ * column where they are found.
+ */
+public class LevelTokenizer implements Closeable {
+	private static final int EOF = -1;
+
+	private final InputStream input;
+	private final String filename;
+	private final byte[] buffer;
+	private final byte[] word;
+	private int position;
+	private int limit;
+	private int line;
+	private int column;
+
+	/**
+	 * Create a new LevelTokenizer at the beginning of a stream.
+	 *
+	 * @param input    the stream of the file
+	 * @param filename the name of the file, for the errors
+	 */
+	public LevelTokenizer(InputStream input, String filename) {
+		this.input = Objects.requireNonNull(input);
+		this.filename = Objects.requireNonNull(filename);
+		buffer = new byte[64 * 1024];
+		word = new byte[32];
+		line = 1;
+		column = 1;
+	}
+
+	// Returns the next character without reading it, EOF at the end of the file
+	private int peek() throws IOException {
+		if (position == limit) {
+			limit = input.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return EOF;
+			}
+		}
+		return buffer[position] & 0xFF;
+	}
+
+	// Read the next character, which is not the end of a line
+	private void advance() {
+		position++;
+		column++;
+	}
+
+	private static boolean isBlank(int c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static boolean isEndOfLine(int c) {
+		return c == '\n' || c == '\r' || c == EOF;
+	}
+
+	// Skip the spaces and the tabs of the line
+	private int skipBlanks() throws IOException {
+		int c;
+		while (isBlank(c = peek())) {
+			advance();
+		}
+		return c;
+	}
+
+	// Read the end of the current line
+	private void readEndOfLine() throws IOException {
+		var c = peek();
+		if (c == EOF) {
+			return;
+		}
+		position++;
+		if (c == '\r' && peek() == '\n') {
+			position++;
+		}
+		line++;
+		column = 1;
+	}
+
+	/**
+	 * Go to the first word of the next line which is not blank.
+	 *
+	 * @return false if there is no line left
+	 * @throws IOException throw a IOException if the file can not be read
+	 */
+	public boolean nextLine() throws IOException {
+		for (;;) {
+			var c = skipBlanks();
+			if (c == EOF) {
+				return false;
+			}
+			if (!isEndOfLine(c)) {
+				return true;
+			}
+			readEndOfLine();
+		}
+	}
+
+	/**
+	 * Check that there is nothing else on the current line, and go to the next
+	 * one.
+	 *
+	 * @throws IOException throw a IOException if there is something else on the
+	 *                     line
+	 */
+	public void endLine() throws IOException {
+		if (!isEndOfLine(skipBlanks())) {
+			throw error("unexpected " + describe(peek()) + ", expected the end of the line");
+		}
+		readEndOfLine();
+	}
+
+	/**
+	 * Returns true if the next word of the line is a number.
+	 *
+	 * @return true if the next word of the line is a number
+	 * @throws IOException throw a IOException if the file can not be read
+	 */
+	public boolean isNumber() throws IOException {
+		var c = skipBlanks();
+		return c == '-' || (c >= '0' && c <= '9');
+	}
+
+	/**
+	 * Read a number of the line.
+	 *
+	 * @return the number read
+	 * @throws IOException throw a IOException if the next word is not a number
+	 */
+	public int readInt() throws IOException {
+		var c = skipBlanks();
+		var negative = c == '-';
+		if (negative) {
+			advance();
+			c = peek();
+		}
+		if (c < '0' || c > '9') {
+			throw error("unexpected " + describe(c) + ", expected a number");
+		}
+		var startcolumn = column;
+		var value = 0L;
+		while (c >= '0' && c <= '9') {
+			value = value * 10 + (c - '0');
+			if (value > Integer.MAX_VALUE + 1L) {
+				column = startcolumn;
+				throw error("number too big");
+			}
+			advance();
+			c = peek();
+		}
+		checkEndOfWord(c);
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			column = startcolumn;
+			throw error("number too big");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Read a word of the line which has to be one of the given words.
+	 *
+	 * @param words the words expected
+	 * @param kind  what the words are, for the errors
+	 * @return the index of the word read in words
+	 * @throws IOException throw a IOException if the next word is not one of the
+	 *                     words
+	 */
+	public int readWord(String[] words, String kind) throws IOException {
+		var c = skipBlanks();
+		var startcolumn = column;
+		var length = 0;
+		while (!isBlank(c) && !isEndOfLine(c)) {
+			if (length < word.length) { // A longer word is not one of the words
+				word[length] = (byte) c;
+			}
+			length++;
+			advance();
+			c = peek();
+		}
+		if (length == 0) {
+			throw error("unexpected " + describe(c) + ", expected " + kind);
+		}
+		for (var x = 0; x < words.length; x++) {
+			if (isWord(words[x], length)) {
+				return x;
+			}
+		}
+		column = startcolumn;
+		throw error("unknown " + kind + " " + new String(word, 0, Math.min(length, word.length),
+				StandardCharsets.ISO_8859_1));
+	}
+
+	// Returns true if the word read is the expected one
+	private boolean isWord(String expected, int length) {
+		if (expected.length() != length || length > word.length) {
+			return false;
+		}
+		for (var x = 0; x < length; x++) {
+			if (expected.charAt(x) != word[x]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// A word or a number has to be followed by a blank or the end of the line
+	private void checkEndOfWord(int c) throws IOException {
+		if (!isBlank(c) && !isEndOfLine(c)) {
+			throw error("unexpected " + describe(c));
+		}
+	}
+
+	// The character for an error
+	private static String describe(int c) {
+		if (c == EOF) {
+			return "end of file";
+		}
+		if (c == '\n' || c == '\r') {
+			return "end of line";
+		}
+		return c >= ' ' && c < 127 ? "'" + (char) c + "'" : String.format("byte 0x%02X", c);
+	}
+
+	/**
+	 * Returns an error found at the current position.
+	 *
+	 * @param message the message of the error
+	 * @return an IOException with the file, the line and the column of the error
+	 */
+	public IOException error(String message) {
+		return error(message, column);
+	}
+
+	/**
+	 * Returns an error found on a column of the current line.
+	 *
+	 * @param message the message of the error
+	 * @param column  the column of the error
+	 * @return an IOException with the file, the line and the column of the error
+	 */
+	public IOException error(String message, int column) {
+		return new IOException(filename + ":" + line + ":" + column + ": " + message);
+	}
+
+	/**
+	 * Returns the line of the next character, starting at 1.
+	 *
+	 * @return the line of the next character
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns the column of the next character, starting at 1.
+	 *
+	 * @return the column of the next character
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * LevelVerifier checks all the levels of a directory without display. This
+ * class is characterized by the following information :
+ * <ul>
+ * <li>The maximum number of states expanded to solve a level</li>
+ * <li>The pool of threads sharing the work</li>
+ * </ul>
+ * Each level is parsed, checked and solved by its own task of the pool, the
+ * search of the Solver is split in the same pool. The result is a Report by
+ * level, which can be printed as a line of tab separated values.
+ */
+public class LevelVerifier {
+	private final long maxnodes;
+	private final ForkJoinPool pool;
+
+	/**
+	 * The result of the verification of a level.
+	 *
+	 * @param filename   the file of the level
+	 * @param error      the error of the parsing or of the verification, null if
+	 *                   the level was verified
+	 * @param parsenanos the duration of the parsing, in nanoseconds
+	 * @param nbrules    the number of rules written at the beginning of the level
+	 * @param warnings   the problems found on the level
+	 * @param solution   the solution found, null if the level was not verified
+	 */
+	public record Report(String filename, String error, long parsenanos, int nbrules, List<String> warnings,
+			Solver.Solution solution) {
+
+		/**
+		 * Returns the name of the columns of {@link #toLine()}.
+		 *
+		 * @return the name of the columns, separated by tabs
+		 */
+		public static String header() {
+			return "file\tstatus\tparse_ms\trules\tsolvable\tmoves\tnodes\twarnings";
+		}
+
+		/**
+		 * Returns true if the level was parsed and has no problem.
+		 *
+		 * @return true if the level was parsed and has no problem
+		 */
+		public boolean isValid() {
+			return error == null && warnings.isEmpty();
+		}
+
+		/**
+		 * Returns the report as a line of tab separated values, in the order of
+		 * {@link #header()}. The number of moves is -1 if no solution was found.
+		 *
+		 * @return the report as a line of tab separated values
+		 */
+		public String toLine() {
+			if (error != null) {
+				return filename + "\terror\t\t\t\t\t\t" + error.replace('\t', ' ');
+			}
+			var solved = solution.isSolved();
+			return String.join("\t", filename, isValid() ? "ok" : "warning",
+					String.format("%.3f", parsenanos / 1e6), String.valueOf(nbrules), String.valueOf(solved),
+					String.valueOf(solved ? solution.moves().size() : -1), String.valueOf(solution.nodes()),
+					String.join(",", warnings));
+		}
+	}
+
+	/**
+	 * Create a new LevelVerifier, using all the processors.
+	 *
+	 * @param maxnodes the maximum number of states expanded to solve a level
+	 */
+	public LevelVerifier(long maxnodes) {
+		this(maxnodes, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new LevelVerifier.
+	 *
+	 * @param maxnodes the maximum number of states expanded to solve a level
+	 * @param pool     the pool of threads sharing the work
+	 */
+	public LevelVerifier(long maxnodes, ForkJoinPool pool) {
+		this.pool = Objects.requireNonNull(pool);
+		if (maxnodes <= 0) {
+			throw new IllegalArgumentException("maxnodes must be positive " + maxnodes);
+		}
+		this.maxnodes = maxnodes;
+	}
+
+	/**
+	 * Verify all the files of a directory, at the same time.
+	 *
+	 * @param directory the directory of the levels
+	 * @return the reports of the levels, sorted by filename
+	 * @throws IOException throw a IOException if the directory can not be read
+	 */
+	public List<Report> verifyAll(Path directory) throws IOException {
+		Objects.requireNonNull(directory);
+		if (!Files.isDirectory(directory)) {
+			throw new IOException(directory + " is not a directory");
+		}
+		List<Path> files;
+		try (var stream = Files.list(directory)) {
+			files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		var tasks = new ArrayList<Callable<Report>>();
+		for (var file : files) {
+			tasks.add(() -> verify(file.toString()));
+		}
+		var reports = new ArrayList<Report>();
+		var futures = pool.invokeAll(tasks);
+		for (var x = 0; x < futures.size(); x++) {
+			try {
+				reports.add(futures.get(x).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("verification interrupted", e);
+			} catch (ExecutionException e) { // An error of a level is reported on its line
+				reports.add(new Report(files.get(x).toString(), String.valueOf(e.getCause()), 0, 0, List.of(), null));
+			}
+		}
+		return reports;
+	}
+
+	/**
+	 * Verify a level : parse it, check it, then search a solution. An error of the
+	 * parsing or of the verification is kept in the report.
+	 *
+	 * @param filename the file of the level
+	 * @return the report of the level
+	 */
+	public Report verify(String filename) {
+		Objects.requireNonNull(filename);
+		var start = System.nanoTime();
+		LevelManager level;
+		try {
+			level = LevelParser.initialise(filename);
+		} catch (IOException | RuntimeException e) { // A wrong word or number is a RuntimeException
+			return new Report(filename, String.valueOf(e.getMessage()), System.nanoTime() - start, 0, List.of(),
+					null);
+		}
+		var parsenanos = System.nanoTime() - start;
+		try {
+			level.updateAnddetectRule();
+			var nbrules = level.getRules().size();
+			var warnings = check(level);
+			var solution = new Solver(level, maxnodes, pool).solve();
+			return new Report(filename, null, parsenanos, nbrules, warnings, solution);
+		} catch (RuntimeException e) { // A level which can not be played does not stop the others
+			return new Report(filename, e.toString(), parsenanos, 0, List.of(), null);
+		}
+	}
+
+	// The problems of a level which can be found without playing it
+	private static List<String> check(LevelManager level) {
+		var warnings = new ArrayList<String>();
+		if (level.isLost()) {
+			warnings.add("no YOU entity");
+		}
+		var texts = level.getAllText();
+		if (texts.stream().noneMatch(text -> text.getWord() == PropertyEnum.WIN && !text.getCoords().isEmpty())) {
+			warnings.add("no WIN text");
+		}
+		if (level.getData().stream().allMatch(entity -> entity.getCoords().isEmpty())) {
+			warnings.add("empty board");
+		}
+		return warnings;
+	}
+}
@@ -1,8 +1,16 @@
 import java.awt.Color;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+
+import javax.management.JMException;
+
 import fr.umlv.zen5.Application;
 import fr.umlv.zen5.ApplicationContext;
 import fr.umlv.zen5.Event;
@@ -50,12 +58,304 @@ public class Main {
 		return lstfile;
 	}
 
+	// Returns the moving direction of a keyboard key, null if the key is not an
+	// arrow
+	private static Direction keyToDirection(KeyboardKey keyboard) {
+		switch (keyboard) {
+		case UP:
+			return Direction.UP;
+		case DOWN:
+			return Direction.DOWN;
+		case LEFT:
+			return Direction.LEFT;
+		case RIGHT:
+			return Direction.RIGHT;
+		default:
+			return null;
+		}
+	}
+
+	// Search the shortest solution of a level, without display
+	// The arguments are : -solve filename [maxnodes]
+	private static void solve(String[] args) throws IOException {
+		var level = LevelParser.initialise(args[1]);
+		level.updateAnddetectRule();
+		var maxnodes = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+		var solution = new Solver(level, maxnodes).solve();
+		if (solution.isSolved()) {
+			System.out.println(args[1] + ": solved in " + solution.moves().size() + " moves " + solution.moves());
+		} else {
+			System.out.println(args[1] + ": no solution found");
+		}
+		System.out.printf("%d nodes expanded, %.0f nodes/s%n", solution.nodes(), solution.nodesPerSecond());
+	}
+
+	// Verify all the levels of a directory, without display, and print a report
+	// The arguments are : -verify directory [maxnodes]
+	private static void verify(String[] args) throws IOException {
+		var maxnodes = args.length > 2 ? Long.parseLong(args[2]) : 100_000;
+		var start = System.nanoTime();
+		var reports = new LevelVerifier(maxnodes).verifyAll(Path.of(args[1]));
+		System.out.println(LevelVerifier.Report.header());
+		var solved = 0;
+		for (var report : reports) {
+			System.out.println(report.toLine());
+			if (report.solution() != null && report.solution().isSolved()) {
+				solved++;
+			}
+		}
+		System.err.printf("%d levels verified, %d solved in %d ms%n", reports.size(), solved,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	// Play again without display the replays of a file or a directory, and print
+	// if each one ends as it was recorded
+	// The arguments are : -replay file|directory
+	private static void replay(String[] args) throws IOException {
+		var path = Path.of(args[1]);
+		List<Path> files;
+		if (Files.isDirectory(path)) {
+			try (var stream = Files.list(path)) {
+				files = stream.filter(file -> file.toString().endsWith(".replay")).sorted()
+						.collect(Collectors.toList());
+			}
+		} else {
+			files = List.of(path);
+		}
+		var start = System.nanoTime();
+		var lines = files.parallelStream().map(file -> {
+			try {
+				var levelname = ReplayPlayer.readLevelName(file);
+				var level = LevelParser.initialise(levelname);
+				level.updateAnddetectRule();
+				var result = ReplayPlayer.play(file, level);
+				return String.join("\t", file.toString(), levelname, String.valueOf(result.moves()),
+						result.outcome().toString(), result.matches() ? "match" : "mismatch");
+			} catch (IOException e) {
+				return file + "\terror\t" + e.getMessage();
+			}
+		}).collect(Collectors.toList());
+		lines.forEach(System.out::println);
+		System.err.printf("%d replays played in %d ms%n", lines.size(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	// A write in a replay
+	@FunctionalInterface
+	private interface ReplayAction {
+		void run(ReplayWriter replay) throws IOException;
+	}
+
+	// Create the replay of a level in the directory, returns null if the game is
+	// not recorded or if the file can not be created
+	private static ReplayWriter startReplay(Path directory, String levelname) {
+		if (directory == null) {
+			return null;
+		}
+		var name = Path.of(levelname).getFileName().toString().replaceFirst("\\.txt$", "");
+		var file = directory.resolve(name + "-" + System.currentTimeMillis() + ".replay");
+		try {
+			return new ReplayWriter(file, levelname);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return null;
+		}
+	}
+
+	// Write in the replay, returns null if the replay can not be written anymore
+	private static ReplayWriter record(ReplayWriter replay, ReplayAction action) {
+		if (replay == null) {
+			return null;
+		}
+		try {
+			action.run(replay);
+			return replay;
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			try {
+				replay.close();
+			} catch (IOException e2) {
+				// The replay is already lost
+			}
+			return null;
+		}
+	}
+
+	// Write the end of the game in the replay and close it
+	private static void endReplay(ReplayWriter replay, LevelManager level, TurnOutcome outcome) {
+		record(replay, writer -> {
+			writer.end(outcome, level.stateHash());
+			writer.close();
+		});
+	}
+
+	// Read the snapshot of the level in progress, returns null if there is no
+	// snapshot or if it can not be read
+	private static LevelSnapshot loadSnapshot(Path file) {
+		if (file == null || !Files.exists(file)) {
+			return null;
+		}
+		try {
+			return LevelSnapshot.load(file);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return null;
+		}
+	}
+
+	// Save the level in progress in the snapshot file, if the game is saved
+	private static void saveSnapshot(Path file, String levelname, LevelManager level) {
+		if (file == null) {
+			return;
+		}
+		try {
+			new LevelSnapshot(levelname, level).save(file);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	// Delete the snapshot of a level which is over, if the game is saved
+	private static void deleteSnapshot(Path file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	// Compile a level to the binary format
+	// The arguments are : -compile source target
+	private static void compile(String[] args) throws IOException {
+		var start = System.nanoTime();
+		LevelCompiler.compile(args[1], Path.of(args[2]));
+		System.out.printf("%s compiled to %s in %d ms%n", args[1], args[2], (System.nanoTime() - start) / 1_000_000);
+	}
+
+	// Create the metrics of the game and register them in JMX, the summary of the
+	// metrics is printed at the exit
+	private static TurnMetrics startMetrics() {
+		var metrics = new TurnMetrics();
+		try {
+			metrics.register();
+		} catch (JMException e) {
+			System.err.println(e.getMessage());
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(metrics.getSummary())));
+		return metrics;
+	}
+
+	// Serve the levels of a directory to the clients of a local socket, a report
+	// is printed every 5 seconds
+	// The arguments are : -server port directory
+	private static void serve(String[] args) throws IOException {
+		try (var server = new GameServer(Integer.parseInt(args[1]), Path.of(args[2]))) {
+			System.err.println("listening on port " + server.getPort());
+			var reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+				var thread = new Thread(task, "report");
+				thread.setDaemon(true);
+				return thread;
+			});
+			reporter.scheduleAtFixedRate(() -> System.err.println(server.report()), 5, 5, TimeUnit.SECONDS);
+			try {
+				server.serve();
+			} finally {
+				reporter.shutdownNow();
+			}
+		}
+	}
+
+	// Wait for the next event, returns null if the wait is interrupted
+	private static Event waitEvent(ApplicationContext context) {
+		while (!Thread.currentThread().isInterrupted()) {
+			var event = context.pollOrWaitEvent(Long.MAX_VALUE);
+			if (event != null) {
+				return event;
+			}
+		}
+		return null;
+	}
+
+	// Wait for a click or a key, returns false if the wait is interrupted
+	private static boolean waitKeyOrClick(ApplicationContext context) {
+		for (;;) {
+			var event = waitEvent(context);
+			if (event == null) {
+				return false;
+			}
+			var action = event.getAction();
+			if (action == Action.POINTER_UP || action == Action.POINTER_DOWN || action == Action.KEY_PRESSED) {
+				return true;
+			}
+		}
+	}
+
 	/***
 	 * Running the application
 	 * 
 	 * @param args the arguments passed with the command
 	 */
 	public static void main(String[] args) {
+		if (1 < args.length && args[0].equals("-solve")) {
+			try {
+				solve(args);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+			return;
+		}
+		if (2 < args.length && args[0].equals("-compile")) {
+			try {
+				compile(args);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+			return;
+		}
+		if (1 < args.length && args[0].equals("-replay")) {
+			try {
+				replay(args);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+			return;
+		}
+		if (2 < args.length && args[0].equals("-server")) {
+			try {
+				serve(args);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+			return;
+		}
+		if (1 < args.length && args[0].equals("-verify")) {
+			try {
+				verify(args);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+			return;
+		}
+		// The turns and the draws are measured, registered in JMX and printed at the
+		// exit with : -metrics. Without it, the game is not measured at all
+		var metrics = Arrays.asList(args).contains("-metrics") ? startMetrics() : null;
+		var otherargs = Arrays.stream(args).filter(arg -> !arg.equals("-metrics")).toArray(String[]::new);
+		// The level in progress is saved when the game is left, and played again at
+		// the next start, with : -snapshot file
+		var snapshotat = Arrays.asList(otherargs).indexOf("-snapshot");
+		var snapshotfile = 0 <= snapshotat && snapshotat + 1 < otherargs.length ? Path.of(otherargs[snapshotat + 1])
+				: null;
+		if (snapshotfile != null) {
+			var withoutsnapshot = new ArrayList<>(Arrays.asList(otherargs));
+			withoutsnapshot.subList(snapshotat, snapshotat + 2).clear();
+			otherargs = withoutsnapshot.toArray(String[]::new);
+		}
+		// The games are recorded in a directory with : -record directory
+		var recorded = 1 < otherargs.length && otherargs[otherargs.length - 2].equals("-record");
+		var recorddir = recorded ? Path.of(otherargs[otherargs.length - 1]) : null;
+		var gameargs = recorded ? Arrays.copyOf(otherargs, otherargs.length - 2) : otherargs;
 		Application.run(Color.BLACK, context -> {
 
 			// get the size of the screen
@@ -65,20 +365,31 @@ public class Main {
 
 			ArrayList<String> files;
 			try {
-				files = argsManager(args, context);
+				files = argsManager(gameargs, context);
 			} catch (IOException e1) {
 				System.err.println(e1.getMessage());
 				context.exit(height);
 				return;
 			}
 
-			for (var levelname : files) {
-				var win = false;
-				var leveldesign = new LevelDesign();
-				// Initializes the data of the board
+			// The game starts again at the level of the snapshot, if it is one of the
+			// levels played
+			var snapshot = loadSnapshot(snapshotfile);
+			var first = snapshot == null ? -1 : files.indexOf(snapshot.levelname());
+			if (first < 0) {
+				snapshot = null;
+				first = 0;
+			}
+
+			var leveldesign = new LevelDesign(); // The images are shared by all the levels
+			for (var x = first; x < files.size(); x++) {
+				var levelname = files.get(x);
+				var resumed = snapshot != null && x == first;
+				// Initializes the data of the board, a level resumed is already in the
+				// state of its snapshot, with its rules
 				LevelManager levelmanager;
 				try {
-					levelmanager = LevelParser.initialise(levelname, leveldesign);
+					levelmanager = resumed ? snapshot.level() : LevelParser.initialise(levelname);
 				} catch (IOException e) {
 					System.err.println(e.getMessage());
 					break;
@@ -86,65 +397,68 @@ public class Main {
 
 				// Initializes the board graphics
 				var view = BabaGameView.initGameGraphics(0, 0, width, height, levelmanager);
-				levelmanager.updateAnddetectRule();
-
-				for (;;) {
-					GameView.draw(context, levelmanager, view, leveldesign);
-					Event event = context.pollOrWaitEvent(50);
-					// If we loose
-					if ((levelmanager.ElemWithThisRule(PropertyEnum.YOU).stream()
-							.flatMap(entity -> entity.getCoords().stream()).collect(Collectors.toList())).isEmpty()) {
-						GameView.loose(context, levelmanager, view);
-						for (;;) {
-							Event event2 = context.pollEvent();
-							if (event2 == null) { // no event
-								continue;
-							}
-							Action action2 = event2.getAction();
-							if (action2 == Action.POINTER_UP || action2 == Action.POINTER_DOWN
-									|| action2 == Action.KEY_PRESSED) {
-								context.exit(0);
-								return;
-							}
-						}
-					}
-					if (event == null) { // no event
-						continue;
-					}
-					Action action = event.getAction();
-					if (action == Action.KEY_PRESSED) {
-						var keyboard = event.getKey();
-						if (keyboard == KeyboardKey.UP || keyboard == KeyboardKey.DOWN || keyboard == KeyboardKey.RIGHT
-								|| keyboard == KeyboardKey.LEFT) {
-							if (levelmanager.move(keyboard)) { // We move and check if we win the level
-								GameView.draw(context, levelmanager, view, leveldesign);
-								GameView.win(context, levelmanager, view);
-								for (;;) {
-									Event event2 = context.pollEvent();
-									if (event2 == null) { // no event
-										continue;
-									}
-									Action action2 = event2.getAction();
-									if (action2 == Action.POINTER_UP || action2 == Action.POINTER_DOWN
-											|| action2 == Action.KEY_PRESSED) {
-										win = true;
-										break;
-									}
-
-								}
-							}
-						}
+				levelmanager.setMetrics(metrics);
+				view.setMetrics(metrics);
+				if (!resumed) {
+					levelmanager.updateAnddetectRule();
+				}
+				// A replay starts at the first state of the level, a level resumed is not
+				// recorded
+				var replay = resumed ? null : startReplay(recorddir, levelname);
+				GameView.draw(context, levelmanager, view, leveldesign);
 
+				// The level is played until a turn is won or lost, the loop waits for the events
+				var outcome = levelmanager.isLost() ? TurnOutcome.LOSE : TurnOutcome.CONTINUE;
+				while (outcome == TurnOutcome.CONTINUE) {
+					var event = waitEvent(context);
+					if (event == null) { // The wait was interrupted
+						endReplay(replay, levelmanager, outcome);
+						saveSnapshot(snapshotfile, levelname, levelmanager);
+						context.exit(0);
+						return;
 					}
-					if (win) {
-						break;
-					}
+					Action action = event.getAction();
 					// We leave the game if we click
 					if (action == Action.POINTER_UP || action == Action.POINTER_DOWN) {
+						endReplay(replay, levelmanager, outcome);
+						saveSnapshot(snapshotfile, levelname, levelmanager);
 						context.exit(0);
 						return;
 					}
-
+					if (action != Action.KEY_PRESSED) {
+						continue;
+					}
+					var direction = keyToDirection(event.getKey());
+					if (event.getKey() == KeyboardKey.Z) { // Undo the last move
+						if (levelmanager.undo()) {
+							replay = record(replay, ReplayWriter::undo);
+							outcome = levelmanager.isLost() ? TurnOutcome.LOSE : TurnOutcome.CONTINUE;
+						}
+					} else if (event.getKey() == KeyboardKey.Y) { // Redo the last move undone
+						if (levelmanager.redo()) {
+							replay = record(replay, ReplayWriter::redo);
+							outcome = levelmanager.isLost() ? TurnOutcome.LOSE : TurnOutcome.CONTINUE;
+						}
+					} else if (direction != null) {
+						outcome = levelmanager.step(direction);
+						replay = record(replay, writer -> writer.move(direction));
+					}
+					if (levelmanager.hasChanged()) { // The board is drawn only when it has changed
+						GameView.draw(context, levelmanager, view, leveldesign);
+					}
+				}
+				endReplay(replay, levelmanager, outcome);
+				deleteSnapshot(snapshotfile);
+				if (outcome == TurnOutcome.LOSE) {
+					GameView.loose(context, levelmanager, view);
+					waitKeyOrClick(context);
+					context.exit(0);
+					return;
+				}
+				GameView.win(context, levelmanager, view);
+				if (!waitKeyOrClick(context)) {
+					context.exit(0);
+					return;
 				}
 			}
 			context.exit(0);
@@ -52,4 +52,13 @@ public enum PropertyEnum implements Word {
 		return fileimg;
 	}
 
+	/**
+	 * Returns the bit of the property in a mask of properties
+	 * 
+	 * @return the bit of the property in a mask of properties
+	 */
+	public int getMask() {
+		return 1 << ordinal();
+	}
+
 }
@@ -0,0 +1,176 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * ReplayPlayer plays again the turns recorded by a ReplayWriter, without
+ * display. The file is read block by block through a buffer, so a replay of any
+ * length is played with the same memory.
+ */
+public class ReplayPlayer {
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	/**
+	 * The result of a replay played again.
+	 *
+	 * @param levelname       the name of the level written in the replay
+	 * @param moves           the number of moves played
+	 * @param outcome         the outcome of the last turn played
+	 * @param statehash       the hash of the level after the last turn
+	 * @param ended           true if the replay has an END block
+	 * @param expectedoutcome the outcome written in the replay, null if it is not
+	 *                        ended
+	 * @param expectedhash    the hash written in the replay
+	 */
+	public record Result(String levelname, long moves, TurnOutcome outcome, long statehash, boolean ended,
+			TurnOutcome expectedoutcome, long expectedhash) {
+
+		/**
+		 * Returns true if the replay is ended and the level ends as it was recorded.
+		 *
+		 * @return true if the level ends as it was recorded
+		 */
+		public boolean matches() {
+			return ended && outcome == expectedoutcome && statehash == expectedhash;
+		}
+	}
+
+	private ReplayPlayer() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the name of the level written in a replay.
+	 *
+	 * @param replay the file of the replay
+	 * @return the name of the level
+	 * @throws IOException throw a IOException if the file is not a replay
+	 */
+	public static String readLevelName(Path replay) throws IOException {
+		try (var channel = FileChannel.open(replay, StandardOpenOption.READ)) {
+			return readHeader(channel, ByteBuffer.allocate(8192).flip(), replay);
+		}
+	}
+
+	/**
+	 * Play a replay on a level. The level has to be in its first state, with its
+	 * rules detected.
+	 *
+	 * @param replay the file of the replay
+	 * @param level  the level to play
+	 * @return the result of the replay
+	 * @throws IOException throw a IOException if the file is not a correct replay
+	 */
+	public static Result play(Path replay, LevelManager level) throws IOException {
+		Objects.requireNonNull(level);
+		try (var channel = FileChannel.open(replay, StandardOpenOption.READ)) {
+			var buffer = ByteBuffer.allocateDirect(8192).flip();
+			var levelname = readHeader(channel, buffer, replay);
+			var outcome = TurnOutcome.CONTINUE;
+			var moves = 0L;
+			while (fill(channel, buffer, 1)) {
+				var tag = buffer.get();
+				switch (tag) {
+				case ReplayWriter.MOVES:
+					require(channel, buffer, 4, replay);
+					var nbmoves = buffer.getInt();
+					if (nbmoves <= 0 || nbmoves > ReplayWriter.BLOCKMOVES) {
+						throw new IOException(replay + ": wrong block of " + nbmoves + " moves");
+					}
+					require(channel, buffer, (nbmoves + 3) >> 2, replay);
+					var packed = 0;
+					for (var x = 0; x < nbmoves; x++) {
+						if ((x & 3) == 0) {
+							packed = buffer.get();
+						}
+						if (outcome != TurnOutcome.CONTINUE) {
+							throw new IOException(replay + ": move after the end of the game");
+						}
+						outcome = level.step(DIRECTIONS[packed >> ((x & 3) * 2) & 3]);
+					}
+					moves += nbmoves;
+					break;
+				case ReplayWriter.UNDO:
+				case ReplayWriter.REDO:
+					require(channel, buffer, 4, replay);
+					for (var count = buffer.getInt(); count > 0; count--) {
+						if (tag == ReplayWriter.UNDO) {
+							level.undo();
+						} else {
+							level.redo();
+						}
+					}
+					outcome = level.isLost() ? TurnOutcome.LOSE : TurnOutcome.CONTINUE;
+					break;
+				case ReplayWriter.END:
+					require(channel, buffer, 1 + 8 + 8, replay);
+					var code = buffer.get() & 0xFF;
+					if (code >= TurnOutcome.values().length) {
+						throw new IOException(replay + ": bad outcome " + code);
+					}
+					var expected = TurnOutcome.values()[code];
+					var expectedhash = buffer.getLong();
+					if (buffer.getLong() != moves) {
+						throw new IOException(replay + ": wrong number of moves");
+					}
+					return new Result(levelname, moves, outcome, level.stateHash(), true, expected, expectedhash);
+				default:
+					throw new IOException(replay + ": unknown block " + tag);
+				}
+			}
+			return new Result(levelname, moves, outcome, level.stateHash(), false, null, 0);
+		}
+	}
+
+	// Read the header of the replay, returns the name of the level
+	private static String readHeader(FileChannel channel, ByteBuffer buffer, Path replay) throws IOException {
+		require(channel, buffer, 4 + 1 + 2, replay);
+		if (buffer.getInt() != ReplayWriter.MAGIC) {
+			throw new IOException(replay + ": not a replay");
+		}
+		var version = buffer.get();
+		if (version != ReplayWriter.VERSION) {
+			throw new IOException(replay + ": unknown version " + version);
+		}
+		var length = buffer.getShort();
+		if (length < 0 || length > ReplayWriter.MAXNAME) {
+			throw new IOException(replay + ": wrong name length " + length);
+		}
+		require(channel, buffer, length, replay);
+		var name = new byte[length];
+		buffer.get(name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	// Read the channel until the buffer has size bytes, throw EOFException if the
+	// file is too short
+	private static void require(FileChannel channel, ByteBuffer buffer, int size, Path replay) throws IOException {
+		if (!fill(channel, buffer, size)) {
+			throw new EOFException(replay + ": unexpected end of file");
+		}
+	}
+
+	// Read the channel until the buffer has size bytes, returns false if the file
+	// ends before
+	private static boolean fill(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+		if (buffer.remaining() >= size) {
+			return true;
+		}
+		buffer.compact();
+		try {
+			while (buffer.position() < size) {
+				if (channel.read(buffer) < 0) {
+					return false;
+				}
+			}
+		} finally {
+			buffer.flip();
+		}
+		return true;
+	}
+}
@@ -0,0 +1,200 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * ReplayWriter records the turns played on a level in a binary file. This class
+ * is characterized by the following information :
+ * <ul>
+ * <li>The channel of the file, written through a buffer</li>
+ * <li>The block of moves being packed</li>
+ * <li>The undos or redos waiting to be written</li>
+ * </ul>
+ * The file begins with a header : the magic number, the version and the name of
+ * the level. Then come blocks, each one begins with a tag :
+ * <ul>
+ * <li>MOVES, the number of moves then the moves packed on 2 bits each, the
+ * ordinal of the Direction, 4 moves by byte</li>
+ * <li>UNDO or REDO, the number of turns undone or redone</li>
+ * <li>END, the outcome of the last turn, the Zobrist hash of the level and the
+ * number of moves played</li>
+ * </ul>
+ * Only the last turn of a game can be won or lost, so the outcome of the turns
+ * is not written for each move : the END block gives the outcome of the game,
+ * and its hash checks the state of the level when the replay is played again.
+ */
+public class ReplayWriter implements Closeable {
+	static final int MAGIC = 0x42414252; // "BABR"
+	static final byte VERSION = 1;
+	static final byte MOVES = 0;
+	static final byte UNDO = 1;
+	static final byte REDO = 2;
+	static final byte END = 3;
+	static final int BLOCKMOVES = 4096; // Maximum number of moves of a block
+	static final int MAXNAME = 1024; // Maximum length of the name of the level, in bytes
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final byte[] moves;
+	private int nbmoves;
+	private byte pendingtag;
+	private int pendingcount;
+	private long total;
+	private boolean ended;
+
+	/**
+	 * Create a new replay file, an existing file is replaced.
+	 *
+	 * @param file      the file of the replay
+	 * @param levelname the name of the level played
+	 * @throws IOException throw a IOException if the file can not be written
+	 */
+	public ReplayWriter(Path file, String levelname) throws IOException {
+		Objects.requireNonNull(file);
+		var name = levelname.getBytes(StandardCharsets.UTF_8);
+		if (name.length > MAXNAME) {
+			throw new IllegalArgumentException("level name too long");
+		}
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = ByteBuffer.allocateDirect(8192);
+		moves = new byte[BLOCKMOVES / 4];
+		buffer.putInt(MAGIC).put(VERSION).putShort((short) name.length).put(name);
+	}
+
+	/**
+	 * Record a move.
+	 *
+	 * @param direction the direction of the move
+	 * @throws IOException throw a IOException if the file can not be written
+	 */
+	public void move(Direction direction) throws IOException {
+		Objects.requireNonNull(direction);
+		checkNotEnded();
+		writePending();
+		var shift = (nbmoves & 3) * 2;
+		if (shift == 0) {
+			moves[nbmoves >> 2] = 0;
+		}
+		moves[nbmoves >> 2] |= direction.ordinal() << shift;
+		nbmoves++;
+		total++;
+		if (nbmoves == BLOCKMOVES) {
+			writeMoves();
+		}
+	}
+
+	/**
+	 * Record the undo of a turn.
+	 *
+	 * @throws IOException throw a IOException if the file can not be written
+	 */
+	public void undo() throws IOException {
+		repeat(UNDO);
+	}
+
+	/**
+	 * Record the redo of a turn.
+	 *
+	 * @throws IOException throw a IOException if the file can not be written
+	 */
+	public void redo() throws IOException {
+		repeat(REDO);
+	}
+
+	// The undos and the redos following each other are written in one block
+	private void repeat(byte tag) throws IOException {
+		checkNotEnded();
+		writeMoves();
+		if (pendingtag != tag) {
+			writePending();
+			pendingtag = tag;
+		}
+		pendingcount++;
+	}
+
+	/**
+	 * Record the end of the game. Nothing can be recorded after.
+	 *
+	 * @param outcome   the outcome of the last turn
+	 * @param statehash the hash of the level at the end, given by
+	 *                  {@link LevelManager#stateHash()}
+	 * @throws IOException throw a IOException if the file can not be written
+	 */
+	public void end(TurnOutcome outcome, long statehash) throws IOException {
+		Objects.requireNonNull(outcome);
+		checkNotEnded();
+		writeMoves();
+		writePending();
+		reserve(1 + 1 + 8 + 8);
+		buffer.put(END).put((byte) outcome.ordinal()).putLong(statehash).putLong(total);
+		ended = true;
+	}
+
+	private void checkNotEnded() {
+		if (ended) {
+			throw new IllegalStateException("the replay is ended");
+		}
+	}
+
+	// Write the block of moves being packed
+	private void writeMoves() throws IOException {
+		if (nbmoves == 0) {
+			return;
+		}
+		var length = (nbmoves + 3) >> 2;
+		reserve(1 + 4 + length);
+		buffer.put(MOVES).putInt(nbmoves).put(moves, 0, length);
+		nbmoves = 0;
+	}
+
+	// Write the undos or the redos waiting
+	private void writePending() throws IOException {
+		if (pendingcount == 0) {
+			return;
+		}
+		reserve(1 + 4);
+		buffer.put(pendingtag).putInt(pendingcount);
+		pendingcount = 0;
+	}
+
+	// Empty the buffer in the channel if it has not enough room left
+	private void reserve(int size) throws IOException {
+		if (buffer.remaining() < size) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Write what is recorded and close the file. A replay closed without
+	 * {@link #end(TurnOutcome, long)} can be played, but not checked.
+	 *
+	 * @throws IOException throw a IOException if the file can not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen()) {
+			return;
+		}
+		try {
+			writeMoves();
+			writePending();
+			drain();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -70,6 +70,76 @@ public class Rule {
 		return noun.toString() + " " + op.toString() + " " + propOrNoun.toString();
 	}
 
+	/**
+	 * Indicates whether some other object is "equal to" this one. Two rules are
+	 * equal if they have the same noun, operator and property (or noun).
+	 * 
+	 * @param o the object with which to compare
+	 * @return true if this object is the same as the o argument; false otherwise.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof Rule) {
+			Rule rule = (Rule) o;
+			return rule.noun.equals(noun) && rule.op.equals(op) && rule.propOrNoun.equals(propOrNoun);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a hash code value for this object.
+	 * 
+	 * @return a hash code value for this object
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(noun, op, propOrNoun);
+	}
+
+	/**
+	 * Returns the rule packed in an int : the noun, the operator and the property
+	 * (or the other noun), each on 8 bits.
+	 * 
+	 * @return the rule packed in an int
+	 */
+	public int toCode() {
+		return codeOf(noun) << 16 | codeOf(op) << 8 | codeOf(propOrNoun);
+	}
+
+	/**
+	 * Returns the rule packed in an int by {@link #toCode()}.
+	 * 
+	 * @param code the rule packed in an int
+	 * @return the rule
+	 */
+	public static Rule fromCode(int code) {
+		return new Rule(wordOf(code >> 16 & 0xFF), (OperatorEnum) wordOf(code >> 8 & 0xFF), wordOf(code & 0xFF));
+	}
+
+	// The kind of the word on 2 bits, then its ordinal on 6 bits
+	static int codeOf(Word word) {
+		if (word instanceof NounTextEnum) {
+			return ((NounTextEnum) word).ordinal();
+		} else if (word instanceof OperatorEnum) {
+			return 1 << 6 | ((OperatorEnum) word).ordinal();
+		}
+		return 2 << 6 | ((PropertyEnum) word).ordinal();
+	}
+
+	// The word of a code given by codeOf
+	static Word wordOf(int code) {
+		switch (code >> 6) {
+		case 0:
+			return NounTextEnum.values()[code & 0x3F];
+		case 1:
+			return OperatorEnum.values()[code & 0x3F];
+		case 2:
+			return PropertyEnum.values()[code & 0x3F];
+		default:
+			throw new IllegalArgumentException("not a word code " + code);
+		}
+	}
+
 	/**
 	 * Returns the BabaElement associated to the noun of the rule.
 	 * 
@@ -1,24 +1,36 @@
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 /**
  * RuleManager manages all the rules of the board. This class is characterized
  * by the following information :
  * <ul>
  * <li>A list of rule called : rulemanager</li>
+ * <li>The rules read on each line of the board</li>
+ * <li>The rules read on each column of the board</li>
+ * <li>A RuleParser, which reads the sentences of a line or a column</li>
  * </ul>
- * RuleManager associate to an Entity a rule.
+ * RuleManager associate to an Entity a rule. The rules are kept by line and by
+ * column, so only the lines and columns where a text has changed are read
+ * again.
  */
 public class RuleManager {
 	private final List<Rule> rulemanager;
+	private final TreeMap<Integer, List<Rule>> linerules;
+	private final TreeMap<Integer, List<Rule>> colrules;
+	private final RuleParser parser;
 
 	/**
 	 * Create a new RuleManager.
 	 */
 	public RuleManager() {
 		rulemanager = new ArrayList<>();
+		linerules = new TreeMap<>();
+		colrules = new TreeMap<>();
+		parser = new RuleParser();
 	}
 
 	/**
@@ -43,11 +55,25 @@ public class RuleManager {
 		rulemanager.remove(rule);
 	}
 
+	/**
+	 * Replace the rules of the RuleManager, without detecting them again. It is
+	 * used to come back to the rules of a previous turn.
+	 * 
+	 * @param rules the rules of the board
+	 */
+	public void restore(List<Rule> rules) {
+		Objects.requireNonNull(rules);
+		rulemanager.clear();
+		rulemanager.addAll(rules);
+	}
+
 	/**
 	 * Removes all the rules to the RuleManager.
 	 */
 	public void removeAll() {
 		rulemanager.clear();
+		linerules.clear();
+		colrules.clear();
 	}
 
 	/**
@@ -58,17 +84,60 @@ public class RuleManager {
 	 */
 	public void updateAnddetectRule(List<Text> texts, List<BabaElement> elements) {
 		Objects.requireNonNull(texts);
+		var lines = new BitSet();
+		var cols = new BitSet();
+		for (var text : texts) { // All the lines and columns with a text
+			for (var coord : text.getCoords()) {
+				lines.set(coord.j());
+				cols.set(coord.i());
+			}
+		}
+		linerules.clear();
+		colrules.clear();
+		updateAnddetectRule(texts, elements, lines, cols);
+	}
+
+	/**
+	 * Detect the rules on the given lines and columns, keep the rules of the other
+	 * lines and columns, and associate all the rule of the board to a
+	 * BabaElement.
+	 * 
+	 * @param texts    list of all the Text in the board
+	 * @param elements list of all the BabaElement in the board
+	 * @param lines    the lines where a text has changed
+	 * @param cols     the columns where a text has changed
+	 */
+	public void updateAnddetectRule(List<Text> texts, List<BabaElement> elements, BitSet lines, BitSet cols) {
+		Objects.requireNonNull(texts);
+		Objects.requireNonNull(lines);
+		Objects.requireNonNull(cols);
 		var copyrule = List.copyOf(rulemanager); // Copy the old rulemanager
-		removeAll(); // Remove all the rules
-		for (var text : texts) { // Detect all the new rules
-			if (text.getWord() instanceof NounTextEnum) {
-				var lstcoords = text.getCoords();
-				for (var coord : lstcoords) {
-					isCorrectRule((NounTextEnum) text.getWord(), null, null, 0, 1, coord, texts);
-					isCorrectRule((NounTextEnum) text.getWord(), null, null, 1, 0, coord, texts);
-				}
+		for (var line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+			linerules.remove(line); // Remove the rules of the changed lines
+		}
+		for (var col = cols.nextSetBit(0); col >= 0; col = cols.nextSetBit(col + 1)) {
+			colrules.remove(col); // Remove the rules of the changed columns
+		}
+		parser.load(texts); // Detect the new rules on the changed lines and columns
+		for (var line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+			var lstrules = parser.parseLine(line);
+			if (!lstrules.isEmpty()) {
+				linerules.put(line, lstrules);
 			}
 		}
+		for (var col = cols.nextSetBit(0); col >= 0; col = cols.nextSetBit(col + 1)) {
+			var lstrules = parser.parseColumn(col);
+			if (!lstrules.isEmpty()) {
+				colrules.put(col, lstrules);
+			}
+		}
+		rulemanager.clear(); // All the rules of the lines and columns
+		for (var lstrules : linerules.values()) {
+			lstrules.forEach(this::add);
+		}
+		for (var lstrules : colrules.values()) {
+			lstrules.forEach(this::add);
+		}
 
 		compareAndApplyRules(copyrule, elements);
 		updateRule(elements);
@@ -102,28 +171,6 @@ public class RuleManager {
 		}
 	}
 
-	// Recursive method to find a Rule
-	private void isCorrectRule(NounTextEnum noun, OperatorEnum op, Word propOrNoun, int i, int j, Coordinate coord,
-			List<Text> texts) {
-		if (noun != null && op != null && propOrNoun != null) { // If a Rule is found
-			var rule = new Rule(noun, op, propOrNoun);
-			rulemanager.add(rule);
-		} else {
-			var newcoord = new Coordinate(coord.i() + i, coord.j() + j);
-			var textsOnNewCoord = texts.stream().filter(text -> text.getCoords().contains(newcoord))
-					.collect(Collectors.toList()); // Texts on the next coordinate
-			for (var text : textsOnNewCoord) {
-				if (text.getWord() instanceof OperatorEnum && noun != null) { // If we found an Operator
-					isCorrectRule(noun, (OperatorEnum) text.getWord(), null, i, j, newcoord, texts);
-				} else if ((text.getWord() instanceof PropertyEnum
-						|| (text.getWord() instanceof NounTextEnum) && op != null)) { // If we found a Property or a
-																						// Noun
-					isCorrectRule(noun, op, text.getWord(), i, j, newcoord, texts);
-				}
-			}
-		}
-	}
-
 	/**
 	 * Returns the list of all the rule of the board.
 	 * 
@@ -134,7 +181,9 @@ public class RuleManager {
 	}
 
 	/**
-	 * Apply all the rule of the board.
+	 * Apply all the property rules of the board. The rules <b>NOUN IS NOUN</b> are
+	 * applied by the LevelManager, which moves the coordinates from an element to
+	 * the other.
 	 * 
 	 * @param elems the list of all the BabaElement of the board
 	 */
@@ -145,13 +194,6 @@ public class RuleManager {
 			if (entity != null) {
 				if (rule.getProp() instanceof PropertyEnum) {
 					entity.addRule((PropertyEnum) rule.getProp());
-				} else if (rule.getProp() instanceof NounTextEnum) {
-					var entity2 = rule.getEntityFromNounText(elems);
-					var lstcoords = List.copyOf(entity.getCoords());
-					for (var coord : lstcoords) {
-						entity2.addCoord(coord);
-						entity.removeCoord(coord);
-					}
 				}
 			}
 		}
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * RuleParser reads the sentences written on the board. This class is
+ * characterized by the following information :
+ * <ul>
+ * <li>A grid of the words on the board, a cell can have several words</li>
+ * <li>The list of the cells filled in the grid</li>
+ * <li>The number of columns and lines of the grid, up to the last word</li>
+ * </ul>
+ * The grid is cut in chunks created only around the words, a chunk without
+ * words is skipped as one empty cell. The words of a line or a column are read
+ * once, from the first to the last cell. A sentence is a list of nouns joined by <b>AND</b>, an operator
+ * <b>IS</b> or <b>HAS</b>, then a list of properties or nouns joined by
+ * <b>AND</b>. A sentence gives a Rule for each noun and each property (or
+ * noun) : <b>BABA AND ROCK IS PUSH AND WIN</b> gives four rules.
+ */
+public class RuleParser {
+	private static final Word[] EMPTY = new Word[0];
+
+	private int width;
+	private int height;
+	private final ChunkedGrid<Word[][]> grid;
+	private final IntList filled; // The column and the line of each cell filled
+
+	/**
+	 * Create a new RuleParser with an empty grid.
+	 */
+	public RuleParser() {
+		grid = new ChunkedGrid<>(() -> new Word[ChunkedGrid.SIZE * ChunkedGrid.SIZE][]);
+		filled = new IntList();
+	}
+
+	/**
+	 * Fill the grid with the words of the texts. The words of the previous call
+	 * are removed.
+	 *
+	 * @param texts list of all the Text in the board
+	 */
+	public void load(List<Text> texts) {
+		Objects.requireNonNull(texts);
+		for (var x = 0; x < filled.size(); x += 2) { // Clear only the cells filled before
+			var i = filled.get(x);
+			var j = filled.get(x + 1);
+			grid.get(i, j)[ChunkedGrid.offsetOf(i, j)] = null;
+		}
+		filled.clear();
+		for (var text : texts) {
+			for (var coord : text.getCoords()) {
+				var i = coord.i();
+				var j = coord.j();
+				width = Math.max(width, i + 1);
+				height = Math.max(height, j + 1);
+				var chunk = grid.getOrCreate(i, j);
+				var offset = ChunkedGrid.offsetOf(i, j);
+				var words = chunk[offset];
+				if (words == null) {
+					filled.add(i);
+					filled.add(j);
+					chunk[offset] = new Word[] { text.getWord() };
+				} else {
+					words = Arrays.copyOf(words, words.length + 1);
+					words[words.length - 1] = text.getWord();
+					chunk[offset] = words;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the rules written on a line, from left to right.
+	 *
+	 * @param line the line to read
+	 * @return the rules written on the line
+	 */
+	public List<Rule> parseLine(int line) {
+		var lstrules = new ArrayList<Rule>();
+		if (line >= 0 && line < height) {
+			parse(0, line, 1, 0, width, lstrules);
+		}
+		return lstrules;
+	}
+
+	/**
+	 * Returns the rules written on a column, from top to bottom.
+	 *
+	 * @param col the column to read
+	 * @return the rules written on the column
+	 */
+	public List<Rule> parseColumn(int col) {
+		var lstrules = new ArrayList<Rule>();
+		if (col >= 0 && col < width) {
+			parse(col, 0, 0, 1, height, lstrules);
+		}
+		return lstrules;
+	}
+
+	// Read nbcells cells of the grid, from the cell i,j, in the direction di,dj.
+	// Usually a cell has one word and there is only one sentence being read. When
+	// a cell has several words, each sentence being read is copied for each word.
+	// The cells of a chunk which is not created are all empty, they are read as
+	// one empty cell.
+	private void parse(int i, int j, int di, int dj, int nbcells, List<Rule> lstrules) {
+		var sentences = new ArrayList<Sentence>();
+		sentences.add(new Sentence());
+		for (var x = 0; x < nbcells; x++, i += di, j += dj) {
+			var chunk = grid.get(i, j);
+			Word[] words;
+			if (chunk == null) {
+				var skip = ChunkedGrid.remaining(i, j, di, dj) - 1; // The other empty cells of the chunk
+				x += skip;
+				i += skip * di;
+				j += skip * dj;
+				words = EMPTY;
+			} else {
+				var cellwords = chunk[ChunkedGrid.offsetOf(i, j)];
+				words = cellwords == null ? EMPTY : cellwords;
+			}
+			if (words.length == 0) { // An empty cell ends all the sentences
+				if (sentences.size() > 1 || sentences.get(0).state != Sentence.START) {
+					var sentence = sentences.get(0);
+					sentences.clear();
+					sentence.reset();
+					sentences.add(sentence);
+				}
+			} else if (words.length == 1) {
+				for (var sentence : sentences) {
+					sentence.read(words[0], lstrules);
+				}
+			} else {
+				var next = new ArrayList<Sentence>();
+				for (var sentence : sentences) {
+					for (var word : words) {
+						var copy = new Sentence(sentence);
+						copy.read(word, lstrules);
+						next.add(copy);
+					}
+				}
+				sentences = next;
+			}
+		}
+	}
+
+	// A sentence being read
+	private static class Sentence {
+		private static final int START = 0; // Waiting for a noun
+		private static final int SUBJECT = 1; // After a noun of the subject
+		private static final int SUBJECT_AND = 2; // After an AND of the subject
+		private static final int VERB = 3; // After the operator
+		private static final int OBJECT = 4; // After a property or a noun
+		private static final int OBJECT_AND = 5; // After an AND of the object
+
+		private int state;
+		private final ArrayList<NounTextEnum> subjects;
+		private OperatorEnum verb;
+		private Word last;
+
+		Sentence() {
+			state = START;
+			subjects = new ArrayList<>();
+		}
+
+		Sentence(Sentence sentence) {
+			state = sentence.state;
+			subjects = new ArrayList<>(sentence.subjects);
+			verb = sentence.verb;
+			last = sentence.last;
+		}
+
+		// Forget the sentence, wait for a noun
+		void reset() {
+			subjects.clear();
+			state = START;
+		}
+
+		// Start a new sentence with a noun
+		private void restart(NounTextEnum noun) {
+			subjects.clear();
+			subjects.add(noun);
+			state = SUBJECT;
+		}
+
+		// Read the next word, the rules found are added to lstrules
+		void read(Word word, List<Rule> lstrules) {
+			switch (state) {
+			case SUBJECT:
+				if (word == OperatorEnum.AND) {
+					state = SUBJECT_AND;
+					return;
+				}
+				if (word == OperatorEnum.IS || word == OperatorEnum.HAS) {
+					verb = (OperatorEnum) word;
+					state = VERB;
+					return;
+				}
+				break;
+			case SUBJECT_AND:
+				if (word instanceof NounTextEnum) {
+					subjects.add((NounTextEnum) word);
+					state = SUBJECT;
+					return;
+				}
+				break;
+			case VERB:
+			case OBJECT_AND:
+				if (word instanceof NounTextEnum || word instanceof PropertyEnum) {
+					for (var noun : subjects) {
+						lstrules.add(new Rule(noun, verb, word));
+					}
+					last = word;
+					state = OBJECT;
+					return;
+				}
+				break;
+			case OBJECT:
+				if (word == OperatorEnum.AND) {
+					state = OBJECT_AND;
+					return;
+				}
+				if (last instanceof NounTextEnum && (word == OperatorEnum.IS || word == OperatorEnum.HAS)) {
+					restart((NounTextEnum) last); // The last noun begins a new sentence
+					verb = (OperatorEnum) word;
+					state = VERB;
+					return;
+				}
+				break;
+			default:
+				break;
+			}
+			// The sentence is over, the word may begin a new one
+			if (word instanceof NounTextEnum) {
+				restart((NounTextEnum) word);
+			} else {
+				state = START;
+			}
+		}
+	}
+}
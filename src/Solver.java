@@ -0,0 +1,239 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solver searches the shortest list of moves to win a level. This class is
+ * characterized by the following information :
+ * <ul>
+ * <li>The level to solve, in its first state</li>
+ * <li>The maximum number of states to expand</li>
+ * <li>The pool of threads sharing the search</li>
+ * </ul>
+ * The search is breadth-first : all the states reached in n moves are expanded
+ * before the states reached in n + 1 moves, so the first win found is the
+ * shortest one. The states of a depth are split between the threads of a
+ * fork-join pool, and a state already reached is not expanded again. The
+ * states expanded are counted by all the threads together, a task stops
+ * expanding and splitting as soon as the maximum is reached, even in the middle
+ * of a depth. A task plays the states on a copy of the level borrowed from a
+ * pool of the search, and gives it back when it ends : the copies are only
+ * reachable from the search, and dropped when {@link #solve()} returns.
+ */
+public class Solver {
+	private static final int THRESHOLD = 64; // Number of states expanded by a task without splitting
+
+	private final LevelManager level;
+	private final long maxnodes;
+	private final ForkJoinPool pool;
+
+	/**
+	 * The result of a search.
+	 * 
+	 * @param moves the shortest list of moves to win, null if no solution was
+	 *              found
+	 * @param nodes the number of states expanded
+	 * @param nanos the duration of the search, in nanoseconds
+	 */
+	public record Solution(List<Direction> moves, long nodes, long nanos) {
+
+		/**
+		 * Returns true if a list of moves to win was found.
+		 * 
+		 * @return true if a list of moves to win was found
+		 */
+		public boolean isSolved() {
+			return moves != null;
+		}
+
+		/**
+		 * Returns the number of states expanded by second.
+		 * 
+		 * @return the number of states expanded by second
+		 */
+		public double nodesPerSecond() {
+			return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+		}
+	}
+
+	// A state of the level, reached from its parent by a move
+	private static final class Node {
+		private final int[] state;
+		private final int hash;
+		private final Node parent;
+		private final Direction direction;
+
+		private Node(int[] state, long hash, Node parent, Direction direction) {
+			this.state = state;
+			this.hash = Long.hashCode(hash); // The Zobrist hash of the level, not computed again
+			this.parent = parent;
+			this.direction = direction;
+		}
+
+		// The moves from the first state to this one
+		private List<Direction> moves() {
+			var moves = new ArrayList<Direction>();
+			for (var node = this; node.parent != null; node = node.parent) {
+				moves.add(node.direction);
+			}
+			Collections.reverse(moves);
+			return moves;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Node && Arrays.equals(((Node) o).state, state);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	// The result of the expansion of a part of a depth
+	private static final class Expansion {
+		private final List<Node> next = new ArrayList<>();
+		private Node win;
+		private long nodes;
+	}
+
+	// Expand the states of the frontier between start and end
+	private final class ExpandTask extends RecursiveTask<Expansion> {
+		private static final long serialVersionUID = 1L;
+		private final List<Node> frontier;
+		private final int start;
+		private final int end;
+		private final Set<Node> visited;
+		private final ConcurrentLinkedQueue<LevelManager> workers; // The copies of the level not borrowed
+		private final AtomicLong expanded; // Number of states expanded by all the tasks
+
+		private ExpandTask(List<Node> frontier, int start, int end, Set<Node> visited,
+				ConcurrentLinkedQueue<LevelManager> workers, AtomicLong expanded) {
+			this.frontier = frontier;
+			this.start = start;
+			this.end = end;
+			this.visited = visited;
+			this.workers = workers;
+			this.expanded = expanded;
+		}
+
+		@Override
+		protected Expansion compute() {
+			if (expanded.get() >= maxnodes) { // Nothing is split once the maximum is reached
+				return new Expansion();
+			}
+			if (end - start > THRESHOLD) {
+				var middle = (start + end) >>> 1;
+				var left = new ExpandTask(frontier, start, middle, visited, workers, expanded);
+				left.fork();
+				var right = new ExpandTask(frontier, middle, end, visited, workers, expanded).compute();
+				var expansion = left.join();
+				expansion.next.addAll(right.next);
+				expansion.nodes += right.nodes;
+				if (expansion.win == null) { // The win of the left part is kept first
+					expansion.win = right.win;
+				}
+				return expansion;
+			}
+			var expansion = new Expansion();
+			var worker = workers.poll();
+			if (worker == null) { // There is a copy for each task running at the same time
+				worker = level.copy();
+			}
+			try {
+				expand(worker, expansion);
+			} finally {
+				workers.offer(worker);
+			}
+			return expansion;
+		}
+
+		// Expand the states between start and end on the copy of the level
+		private void expand(LevelManager worker, Expansion expansion) {
+			for (var x = start; x < end && expansion.win == null; x++) {
+				if (expanded.incrementAndGet() > maxnodes) { // Each state expanded is counted first
+					break;
+				}
+				var node = frontier.get(x);
+				expansion.nodes++;
+				worker.setState(node.state);
+				for (var direction : Direction.values()) {
+					var outcome = worker.step(direction);
+					if (outcome == TurnOutcome.WIN) {
+						expansion.win = new Node(worker.getState(), worker.stateHash(), node, direction);
+						break;
+					}
+					if (outcome == TurnOutcome.CONTINUE) {
+						var child = new Node(worker.getState(), worker.stateHash(), node, direction);
+						if (visited.add(child)) {
+							expansion.next.add(child);
+						}
+					}
+					worker.undo(); // Back to the state of the node for the next move
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a new Solver, using all the processors.
+	 * 
+	 * @param level    the level to solve, its rules have to be detected
+	 * @param maxnodes the maximum number of states to expand
+	 */
+	public Solver(LevelManager level, long maxnodes) {
+		this(level, maxnodes, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new Solver.
+	 * 
+	 * @param level    the level to solve, its rules have to be detected
+	 * @param maxnodes the maximum number of states to expand
+	 * @param pool     the pool of threads sharing the search
+	 */
+	public Solver(LevelManager level, long maxnodes, ForkJoinPool pool) {
+		this.level = Objects.requireNonNull(level);
+		this.pool = Objects.requireNonNull(pool);
+		if (maxnodes <= 0) {
+			throw new IllegalArgumentException("maxnodes must be positive " + maxnodes);
+		}
+		this.maxnodes = maxnodes;
+	}
+
+	/**
+	 * Search the shortest list of moves to win the level. The level given to the
+	 * Solver is not modified.
+	 * 
+	 * @return the solution, with no moves if the level can not be won in less than
+	 *         maxnodes expanded states
+	 */
+	public Solution solve() {
+		var start = System.nanoTime();
+		var visited = ConcurrentHashMap.<Node>newKeySet();
+		var workers = new ConcurrentLinkedQueue<LevelManager>();
+		var root = new Node(level.getState(), level.stateHash(), null, null);
+		visited.add(root);
+		List<Node> frontier = List.of(root);
+		var expanded = new AtomicLong();
+		var nodes = 0L;
+		while (!frontier.isEmpty() && nodes < maxnodes) {
+			var expansion = pool.invoke(new ExpandTask(frontier, 0, frontier.size(), visited, workers, expanded));
+			nodes += expansion.nodes;
+			if (expansion.win != null) {
+				return new Solution(expansion.win.moves(), nodes, System.nanoTime() - start);
+			}
+			frontier = expansion.next;
+		}
+		return new Solution(null, nodes, System.nanoTime() - start);
+	}
+}
@@ -9,17 +9,20 @@ import java.util.Objects;
  * <li>A word, which is a interface to define if it's a noun, operator or
  * property</li>
  * <li>A list of rule, defined as a list of PropertyEnum</li>
- * <li>A list of coordinates, defined as a list of Coordinate</li>
+ * <li>The EntityStore of its level and its type in the store, where its
+ * coordinates are</li>
  * </ul>
- * Text is <b>push</b> by default.
+ * Text is <b>push</b> by default, a Text is only once on a coordinate.
  */
 public class Text implements BabaEntity {
+	private static final int RULEMASK = PropertyEnum.PUSH.getMask();
 	private final Word word;
 	private final List<PropertyEnum> ruleOfThisElem;
-	private final List<Coordinate> coords;
+	private EntityStore store;
+	private int type;
 
 	/**
-	 * Create a new List of PropertyEnum and a new List of Coordinate.
+	 * Create a new List of PropertyEnum, the Text is in no level.
 	 * 
 	 * @param word the argument word is either a noun or an operator or a property.
 	 */
@@ -27,7 +30,6 @@ public class Text implements BabaEntity {
 		this.word = word;
 		ruleOfThisElem = new ArrayList<>();
 		ruleOfThisElem.add(PropertyEnum.PUSH);
-		coords = new ArrayList<>();
 	}
 
 	@Override
@@ -40,30 +42,30 @@ public class Text implements BabaEntity {
 		return ruleOfThisElem;
 	}
 
+	@Override
+	public int getRuleMask() {
+		return RULEMASK;
+	}
+
 	@Override
 	public String toString() {
 		return word.toString();
 	}
 
 	@Override
-	public void addCoord(Coordinate coord) {
-		Objects.requireNonNull(coord);
-		if (!coords.contains(coord)) {
-			coords.add(coord);
-		}
+	public void attach(EntityStore store, int type) {
+		this.store = Objects.requireNonNull(store);
+		this.type = type;
 	}
 
 	@Override
-	public void removeCoord(Coordinate coord) {
-		Objects.requireNonNull(coord);
-		if (coords.contains(coord)) {
-			coords.remove(coord);
-		}
+	public int getType() {
+		return store == null ? -1 : type;
 	}
 
 	@Override
 	public List<Coordinate> getCoords() {
-		return coords;
+		return store == null ? List.of() : store.coordsOf(type);
 	}
 
 	/**
@@ -77,6 +79,9 @@ public class Text implements BabaEntity {
 
 	@Override
 	public int compareTo(BabaEntity o) {
+		if (o instanceof Text) {
+			return 0;
+		}
 		return 1;
 	}
 
@@ -0,0 +1,40 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * TurnEvent is the Flight Recorder event of a turn played by a level. The event
+ * lasts the whole turn and gives the time spent in each phase of the turn.
+ */
+@Name("baba.Turn")
+@Label("Turn")
+@Category("Baba Is You")
+@Description("A turn played by a level")
+public class TurnEvent extends Event {
+	@Label("Move")
+	@Description("Time to move the YOU's entities and what they push")
+	@Timespan
+	long move;
+
+	@Label("Rules")
+	@Description("Time to detect the rules again")
+	@Timespan
+	long rules;
+
+	@Label("Effects")
+	@Description("Time to apply SINK, MELT and HOT, DEFEAT and WIN on the cells")
+	@Timespan
+	long effects;
+
+	@Label("Tiles Moved")
+	int tilesmoved;
+
+	@Label("Rules Changed")
+	int ruleschanged;
+
+	@Label("Outcome")
+	String outcome;
+}
@@ -0,0 +1,274 @@
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * TurnMetrics measures where the time of a turn and of a draw goes. This class
+ * is characterized by the following information :
+ * <ul>
+ * <li>A LatencyHistogram of the times of each phase</li>
+ * <li>The counters of the turns, the tiles moved, the rules changed, the draws
+ * and the cells repainted</li>
+ * <li>The start of the current phase, and the Flight Recorder events of the
+ * current turn and draw</li>
+ * </ul>
+ * A level given a TurnMetrics calls {@link #beginTurn()}, then ends each phase
+ * of the turn, a view calls {@link #beginDraw()} and {@link #endDraw(int)}. A
+ * phase costs one read of the clock, the end of a phase is the start of the
+ * next one, and a record in a histogram. The metrics are written by the thread
+ * of the game, they are read and reset through JMX by {@link TurnMetricsMXBean}
+ * and each turn and draw is a Flight Recorder event, {@link TurnEvent} and
+ * {@link DrawEvent}. The counters are guarded by the lock of the TurnMetrics
+ * and each histogram by its own lock, so a reset from JMX never leaves a
+ * histogram or the counters half cleared for the game thread.
+ */
+public class TurnMetrics implements TurnMetricsMXBean {
+	/**
+	 * The phases measured
+	 */
+	public enum Phase {
+		/**
+		 * The move of the YOU's entities and of what they push
+		 */
+		MOVE,
+		/**
+		 * The detection of the rules
+		 */
+		RULES,
+		/**
+		 * SINK, MELT and HOT, DEFEAT and WIN applied on the cells
+		 */
+		EFFECTS,
+		/**
+		 * The whole turn
+		 */
+		TURN,
+		/**
+		 * The draw of the board
+		 */
+		DRAW;
+	}
+
+	private final EnumMap<Phase, LatencyHistogram> histograms;
+	private long turns;
+	private long tilesmoved;
+	private long ruleschanged;
+	private long draws;
+	private long cellsrepainted;
+	private long turnstart;
+	private long phasestart;
+	private long drawstart;
+	private TurnEvent turnevent;
+	private DrawEvent drawevent;
+
+	/**
+	 * Create a new TurnMetrics without any time.
+	 */
+	public TurnMetrics() {
+		histograms = new EnumMap<>(Phase.class);
+		for (var phase : Phase.values()) {
+			histograms.put(phase, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * Register the metrics in the MBean server of the platform, with the name
+	 * baba:type=TurnMetrics.
+	 *
+	 * @throws JMException if the metrics can not be registered
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("baba:type=TurnMetrics"));
+	}
+
+	/**
+	 * Returns the histogram of the times of a phase, in nanoseconds.
+	 *
+	 * @param phase the phase
+	 * @return the histogram of the phase
+	 */
+	public LatencyHistogram getHistogram(Phase phase) {
+		return histograms.get(Objects.requireNonNull(phase));
+	}
+
+	/**
+	 * Start a turn, the move of the turn starts too.
+	 */
+	public void beginTurn() {
+		turnevent = new TurnEvent();
+		turnevent.begin();
+		turnstart = System.nanoTime();
+		phasestart = turnstart;
+	}
+
+	// End the current phase and returns its time, the next phase starts
+	private long endPhase(Phase phase) {
+		var now = System.nanoTime();
+		var time = now - phasestart;
+		histograms.get(phase).record(time);
+		phasestart = now;
+		return time;
+	}
+
+	/**
+	 * End the move of the turn, the detection of the rules starts.
+	 *
+	 * @param tilesmoved the number of tiles moved
+	 */
+	public void endMove(int tilesmoved) {
+		turnevent.move = endPhase(Phase.MOVE);
+		turnevent.tilesmoved = tilesmoved;
+		synchronized (this) {
+			this.tilesmoved += tilesmoved;
+		}
+	}
+
+	/**
+	 * End the detection of the rules, the effects on the cells start.
+	 *
+	 * @param ruleschanged the number of rules which have appeared or disappeared
+	 */
+	public void endRules(int ruleschanged) {
+		turnevent.rules = endPhase(Phase.RULES);
+		turnevent.ruleschanged = ruleschanged;
+		synchronized (this) {
+			this.ruleschanged += ruleschanged;
+		}
+	}
+
+	/**
+	 * End the effects on the cells, and the turn.
+	 *
+	 * @param outcome the outcome of the turn
+	 */
+	public void endTurn(TurnOutcome outcome) {
+		turnevent.effects = endPhase(Phase.EFFECTS);
+		histograms.get(Phase.TURN).record(phasestart - turnstart);
+		synchronized (this) {
+			turns++;
+		}
+		turnevent.end();
+		if (turnevent.shouldCommit()) {
+			turnevent.outcome = outcome.toString();
+			turnevent.commit();
+		}
+		turnevent = null;
+	}
+
+	/**
+	 * Start a draw of the board.
+	 */
+	public void beginDraw() {
+		drawevent = new DrawEvent();
+		drawevent.begin();
+		drawstart = System.nanoTime();
+	}
+
+	/**
+	 * End the draw of the board.
+	 *
+	 * @param cellsrepainted the number of cells drawn again
+	 */
+	public void endDraw(int cellsrepainted) {
+		histograms.get(Phase.DRAW).record(System.nanoTime() - drawstart);
+		synchronized (this) {
+			draws++;
+			this.cellsrepainted += cellsrepainted;
+		}
+		drawevent.end();
+		if (drawevent.shouldCommit()) {
+			drawevent.cellsrepainted = cellsrepainted;
+			drawevent.commit();
+		}
+		drawevent = null;
+	}
+
+	@Override
+	public synchronized long getTurns() {
+		return turns;
+	}
+
+	@Override
+	public synchronized long getTilesMoved() {
+		return tilesmoved;
+	}
+
+	@Override
+	public synchronized long getRulesChanged() {
+		return ruleschanged;
+	}
+
+	@Override
+	public synchronized long getDraws() {
+		return draws;
+	}
+
+	@Override
+	public synchronized long getCellsRepainted() {
+		return cellsrepainted;
+	}
+
+	// A value of the histogram of each phase
+	private Map<String, Long> byPhase(ToLongFunction<LatencyHistogram> value) {
+		var map = new LinkedHashMap<String, Long>();
+		for (var phase : Phase.values()) {
+			map.put(phase.toString(), value.applyAsLong(histograms.get(phase)));
+		}
+		return map;
+	}
+
+	@Override
+	public Map<String, Long> getMedianNanos() {
+		return byPhase(histogram -> histogram.getValueAtPercentile(50));
+	}
+
+	@Override
+	public Map<String, Long> getP99Nanos() {
+		return byPhase(histogram -> histogram.getValueAtPercentile(99));
+	}
+
+	@Override
+	public Map<String, Long> getMaxNanos() {
+		return byPhase(LatencyHistogram::getMax);
+	}
+
+	@Override
+	public synchronized String getSummary() {
+		var summary = new StringBuilder();
+		summary.append(String.format("%-8s %8s %10s %10s %10s %10s %10s%n", "phase", "count", "mean us", "p50 us",
+				"p90 us", "p99 us", "max us"));
+		for (var phase : Phase.values()) {
+			var histogram = histograms.get(phase);
+			summary.append(String.format("%-8s %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", phase, histogram.getCount(),
+					histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(90) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getMax() / 1000.0));
+		}
+		summary.append(String.format("%d turns, %d tiles moved, %d rules changed, %d draws, %d cells repainted%n",
+				turns, tilesmoved, ruleschanged, draws, cellsrepainted));
+		return summary.toString();
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (var histogram : histograms.values()) {
+			histogram.reset();
+		}
+		turns = 0;
+		tilesmoved = 0;
+		ruleschanged = 0;
+		draws = 0;
+		cellsrepainted = 0;
+	}
+
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+}
@@ -0,0 +1,76 @@
+import java.util.Map;
+
+/**
+ * TurnMetricsMXBean is the management interface of {@link TurnMetrics}, seen
+ * through JMX by tools like jconsole. The times are given in nanoseconds for
+ * each phase : MOVE, RULES, EFFECTS, TURN and DRAW.
+ */
+public interface TurnMetricsMXBean {
+	/**
+	 * Returns the number of turns played.
+	 *
+	 * @return the number of turns played
+	 */
+	long getTurns();
+
+	/**
+	 * Returns the number of tiles moved by the turns.
+	 *
+	 * @return the number of tiles moved
+	 */
+	long getTilesMoved();
+
+	/**
+	 * Returns the number of rules which have appeared or disappeared.
+	 *
+	 * @return the number of rules changed
+	 */
+	long getRulesChanged();
+
+	/**
+	 * Returns the number of draws of the board.
+	 *
+	 * @return the number of draws
+	 */
+	long getDraws();
+
+	/**
+	 * Returns the number of cells drawn again by the draws.
+	 *
+	 * @return the number of cells repainted
+	 */
+	long getCellsRepainted();
+
+	/**
+	 * Returns the median time of each phase.
+	 *
+	 * @return the median time of each phase, in nanoseconds
+	 */
+	Map<String, Long> getMedianNanos();
+
+	/**
+	 * Returns the 99th percentile of the time of each phase.
+	 *
+	 * @return the 99th percentile of each phase, in nanoseconds
+	 */
+	Map<String, Long> getP99Nanos();
+
+	/**
+	 * Returns the longest time of each phase.
+	 *
+	 * @return the longest time of each phase, in nanoseconds
+	 */
+	Map<String, Long> getMaxNanos();
+
+	/**
+	 * Returns a table of the times of the phases and of the counters.
+	 *
+	 * @return the summary of the metrics
+	 */
+	String getSummary();
+
+	/**
+	 * Forget all the times and the counters.
+	 */
+	void reset();
+}
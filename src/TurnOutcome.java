@@ -0,0 +1,18 @@
+/**
+ * Enum of the possible outcomes of a turn
+ * 
+ */
+public enum TurnOutcome {
+	/**
+	 * The level goes on
+	 */
+	CONTINUE,
+	/**
+	 * A YOU's entity is on a WIN element
+	 */
+	WIN,
+	/**
+	 * There is no YOU's entity left on the board
+	 */
+	LOSE;
+}
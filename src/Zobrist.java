@@ -0,0 +1,68 @@
+/**
+ * Zobrist gives the random keys used to hash the state of a level. The hash of
+ * a state is the xor of the keys of all its parts, so it is updated in constant
+ * time when a part is added or removed : xor-ing a key again removes it.
+ * <ul>
+ * <li>An entity on a cell has a key for its type, its cell and its
+ * multiplicity : the n-th entity of a type on a cell has the key of n</li>
+ * <li>A rule has a key for its code given by {@link Rule#toCode()}</li>
+ * </ul>
+ * The keys are not stored in a table, they are mixed from their parts with a
+ * fixed seed. They are the same for all the levels and all the runs, so two
+ * hashes of the same state are equal even if they are computed by two copies
+ * of a level.
+ */
+public final class Zobrist {
+	private static final long SEED = 0x6A09E667F3BCC909L;
+	private static final long RULESEED = 0xBB67AE8584CAA73BL;
+
+	private Zobrist() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Returns the type of an entity, the same for all the equal entities.
+	 *
+	 * @param entity the entity
+	 * @return the type of the entity
+	 */
+	public static int typeOf(BabaEntity entity) {
+		if (entity instanceof Text) {
+			return 1 << 8 | Rule.codeOf(((Text) entity).getWord());
+		}
+		return ((BabaElement) entity).getElement().ordinal();
+	}
+
+	/**
+	 * Returns the key of the n-th entity of a type on a cell.
+	 *
+	 * @param type         the type of the entity, given by
+	 *                     {@link #typeOf(BabaEntity)}
+	 * @param cell         the index of the cell
+	 * @param multiplicity the number of entities of this type on the cell,
+	 *                     counting this one
+	 * @return the key of the entity on the cell
+	 */
+	public static long cellKey(int type, int cell, int multiplicity) {
+		return mix(SEED ^ ((long) type << 52 | (long) (multiplicity & 0xFFFFF) << 32 | cell & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * Returns the key of a rule.
+	 *
+	 * @param code the code of the rule, given by {@link Rule#toCode()}
+	 * @return the key of the rule
+	 */
+	public static long ruleKey(int code) {
+		return mix(RULESEED ^ code);
+	}
+
+	// The finalizer of SplitMix64, each bit of the value changes half the bits of
+	// the result
+	private static long mix(long value) {
+		var z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}